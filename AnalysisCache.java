@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Deep search results kept across sessions: position hash -> best move, score, depth. The cache is a
+// fixed-size memory-mapped file, so it costs nothing to open and only the pages actually probed are
+// read from disk. Slots are grouped in buckets of BUCKET_SLOTS; a full bucket evicts its least recently
+// used entry (LRU) or its least used entry, ties going to the older one (LFU).
+//
+// Layout (little-endian): a HEADER_BYTES header (magic, version, slot count, use clock), then slots of
+// SLOT_BYTES: key (long, 0 = empty), move (int), score (int, side to move), depth (short), unused
+// (short), hits (int), last use (long).
+public final class AnalysisCache {
+    public enum Policy { LRU, LFU }
+
+    public static final int MIN_DEPTH = 10; // Shallower results are cheaper to search again than to store
+    public static final int TRUSTED_DEPTH = 16; // Deep enough to stand in for a search without a depth limit
+
+    private static final int MAGIC = 0x4548_4341; // "ACHE" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 32;
+    private static final int BUCKET_SLOTS = 4;
+
+    private static final int KEY = 0, MOVE = 8, SCORE = 12, DEPTH = 16, HITS = 20, LAST_USE = 24;
+
+    public static class Entry {
+        public final int move;
+        public final int score;
+        public final int depth;
+
+        Entry(int move, int score, int depth) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+        }
+    }
+
+    private static AnalysisCache shared;
+    private static boolean sharedOpened;
+
+    private final MappedByteBuffer map;
+    private final int bucketMask;
+    private final Policy policy;
+    private long clock;
+    private long hits, misses;
+
+    private AnalysisCache(MappedByteBuffer map, int slots, Policy policy) {
+        this.map = map;
+        this.bucketMask = slots / BUCKET_SLOTS - 1;
+        this.policy = policy;
+        this.clock = map.getLong(16);
+    }
+
+    // Opens the file, creating or rebuilding it if it is missing or of another size
+    public static AnalysisCache open(Path file, int megabytes, Policy policy) throws IOException {
+        long slots = Long.highestOneBit(Math.max(BUCKET_SLOTS, (long) megabytes * 1024 * 1024 / SLOT_BYTES));
+        slots = Math.min(slots, 1 << 25); // One mapping holds at most 2 GB
+        long size = HEADER_BYTES + slots * SLOT_BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean fresh = channel.size() != size;
+            if (fresh) channel.truncate(0);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (fresh || map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != slots) {
+                for (long i = 0; i < size; i += 8) map.putLong((int) i, 0L);
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                map.putInt(8, (int) slots);
+            }
+            return new AnalysisCache(map, (int) slots, policy);
+        }
+    }
+
+    // The cache named by -Dchess.cache (default analysis.cache; "none" turns it off), sized by
+    // -Dchess.cache.mb (default 64) and evicting by -Dchess.cache.policy (LRU or LFU, default LRU).
+    // Null if it is off or cannot be opened.
+    public static synchronized AnalysisCache shared() {
+        if (sharedOpened) return shared;
+        sharedOpened = true;
+        String path = System.getProperty("chess.cache", "analysis.cache");
+        if (path.isEmpty() || path.equals("none")) return null;
+        try {
+            Policy policy = Policy.valueOf(System.getProperty("chess.cache.policy", "LRU").toUpperCase());
+            shared = open(Paths.get(path), Integer.getInteger("chess.cache.mb", 64), policy);
+            AnalysisCache cache = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(cache::force, "analysis-cache-flush"));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Analysis cache " + path + " not opened: " + e.getMessage());
+        }
+        return shared;
+    }
+
+    public synchronized Entry lookup(long key) {
+        if (key == 0) return null;
+        int base = bucket(key);
+        for (int i = 0; i < BUCKET_SLOTS; i++) {
+            int slot = base + i * SLOT_BYTES;
+            if (map.getLong(slot + KEY) != key) continue;
+            touch(slot);
+            hits++;
+            return new Entry(map.getInt(slot + MOVE), map.getInt(slot + SCORE), map.getShort(slot + DEPTH));
+        }
+        misses++;
+        return null;
+    }
+
+    // The entry for the position if its move is legal there, which also guards against key collisions
+    public Entry probe(Position pos) {
+        Entry e = lookup(pos.hash());
+        if (e == null) return null;
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(moves);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == e.move) return e;
+        }
+        return null;
+    }
+
+    // Keeps the deeper of an existing and a new result for the same position
+    public synchronized void store(long key, int move, int score, int depth) {
+        if (key == 0 || depth < MIN_DEPTH || move == Move.NONE) return;
+        int base = bucket(key);
+        int victim = -1;
+        boolean empty = false;
+        for (int i = 0; i < BUCKET_SLOTS; i++) {
+            int slot = base + i * SLOT_BYTES;
+            long k = map.getLong(slot + KEY);
+            if (k == key) {
+                if (map.getShort(slot + DEPTH) > depth) return;
+                victim = slot;
+                break;
+            }
+            if (k == 0) {
+                if (!empty) victim = slot;
+                empty = true;
+            } else if (!empty && (victim < 0 || evictsBefore(slot, victim))) {
+                victim = slot;
+            }
+        }
+        if (map.getLong(victim + KEY) != key) map.putInt(victim + HITS, 0);
+        map.putLong(victim + KEY, key);
+        map.putInt(victim + MOVE, move);
+        map.putInt(victim + SCORE, score);
+        map.putShort(victim + DEPTH, (short) depth);
+        touch(victim);
+    }
+
+    private boolean evictsBefore(int a, int b) {
+        if (policy == Policy.LFU) {
+            int hitsA = map.getInt(a + HITS), hitsB = map.getInt(b + HITS);
+            if (hitsA != hitsB) return hitsA < hitsB;
+        }
+        return map.getLong(a + LAST_USE) < map.getLong(b + LAST_USE);
+    }
+
+    private void touch(int slot) {
+        map.putLong(slot + LAST_USE, ++clock);
+        map.putLong(16, clock);
+        int h = map.getInt(slot + HITS);
+        if (h < Integer.MAX_VALUE) map.putInt(slot + HITS, h + 1);
+    }
+
+    private int bucket(long key) {
+        long mixed = key ^ (key >>> 29);
+        return HEADER_BYTES + (int) (mixed & bucketMask) * BUCKET_SLOTS * SLOT_BYTES;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized void force() {
+        map.force();
+    }
+}
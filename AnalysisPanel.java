@@ -0,0 +1,224 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// Side panel showing the background analysis: an evaluation bar, the top lines, a hint button and a
+// forced-mate finder. The analysis thread only publishes snapshots; a Swing timer picks up the newest
+// one a few times a second, so a fast search never floods the event queue.
+public class AnalysisPanel extends JPanel {
+    private static final int REFRESH_MS = 150;
+    private static final int MAX_LINE_MOVES = 10;
+
+    // One solver for all boards, sized by -Dchess.mate.mb (default 64); -Dchess.mate.moves and
+    // -Dchess.mate.seconds bound each request (default mate in 8, 10 s)
+    private static final ExecutorService MATE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "mate-solver");
+        t.setDaemon(true);
+        return t;
+    });
+    private static MateSolver mateSolver;
+
+    private final Analyzer analyzer;
+    private final Supplier<Position> positionSupplier;
+    private final IntConsumer hintHandler;
+
+    private final JCheckBox analyseBox = new JCheckBox("Analyse");
+    private final JSpinner linesSpinner = new JSpinner(new SpinnerNumberModel(3, 1, 5, 1));
+    private final JButton hintButton = new JButton("Hint");
+    private final JButton mateButton = new JButton("Find mate");
+    private final JTextArea linesArea = new JTextArea(8, 28);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JLabel mateLabel = new JLabel(" ");
+    private final EvalBar evalBar = new EvalBar();
+
+    private Analyzer.Snapshot shown = null;
+    private boolean allowed = true;
+    private AtomicBoolean mateCancel = new AtomicBoolean();
+
+    public AnalysisPanel(Analyzer analyzer, Supplier<Position> positionSupplier, IntConsumer hintHandler) {
+        super(new BorderLayout(6, 6));
+        this.analyzer = analyzer;
+        this.positionSupplier = positionSupplier;
+        this.hintHandler = hintHandler;
+        setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        controls.add(analyseBox);
+        controls.add(new JLabel("Lines:"));
+        controls.add(linesSpinner);
+        controls.add(hintButton);
+        controls.add(mateButton);
+
+        linesArea.setEditable(false);
+        linesArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JPanel center = new JPanel(new BorderLayout(0, 6));
+        center.add(controls, BorderLayout.NORTH);
+        center.add(new JScrollPane(linesArea), BorderLayout.CENTER);
+        JPanel status = new JPanel(new GridLayout(2, 1));
+        status.add(statusLabel);
+        status.add(mateLabel);
+        center.add(status, BorderLayout.SOUTH);
+
+        add(evalBar, BorderLayout.WEST);
+        add(center, BorderLayout.CENTER);
+
+        analyseBox.addActionListener(e -> restart());
+        linesSpinner.addChangeListener(e -> {
+            analyzer.setMultiPv((Integer) linesSpinner.getValue());
+            restart();
+        });
+        hintButton.addActionListener(e -> requestHint());
+        mateButton.addActionListener(e -> findMate());
+
+        Timer refresh = new Timer(REFRESH_MS, e -> refresh());
+        refresh.start();
+    }
+
+    // Called after every move; analysis pauses while not allowed (e.g. while the computer thinks)
+    public void positionChanged(boolean allowed) {
+        this.allowed = allowed;
+        hintButton.setEnabled(allowed);
+        analyzer.cancelHint();
+        cancelMate();
+        restart();
+    }
+
+    public void setGameOver() {
+        allowed = false;
+        analyzer.stop();
+        analyzer.cancelHint();
+        hintButton.setEnabled(false);
+        cancelMate();
+        mateButton.setEnabled(false);
+    }
+
+    private void restart() {
+        if (analyseBox.isSelected() && allowed) {
+            analyzer.analyze(positionSupplier.get());
+        } else {
+            analyzer.stop();
+        }
+    }
+
+    private void requestHint() {
+        hintButton.setEnabled(false);
+        Position root = positionSupplier.get();
+        long rootHash = root.hash();
+        analyzer.hint(root, 1000, move -> SwingUtilities.invokeLater(() -> {
+            if (positionSupplier.get().hash() != rootHash) return; // Moved on; positionChanged reset the button
+            hintButton.setEnabled(allowed);
+            if (allowed) hintHandler.accept(move);
+        }));
+    }
+
+    private void findMate() {
+        Position root = positionSupplier.get();
+        AtomicBoolean cancel = new AtomicBoolean();
+        mateCancel = cancel;
+        mateButton.setEnabled(false);
+        mateLabel.setText("Searching for a forced mate...");
+        MATE_EXECUTOR.execute(() -> {
+            MateSolver.Result r = solveMate(root, cancel);
+            SwingUtilities.invokeLater(() -> {
+                if (cancel.get()) return;
+                mateButton.setEnabled(true);
+                String stats = String.format("   proof %d nodes, %dk nodes at %dk n/s", r.proofSize,
+                        r.nodes / 1000, r.nodesPerSecond() / 1000);
+                if (r.mateIn > 0) {
+                    String line = MateSolver.formatLine(root, r.line);
+                    mateLabel.setText("Mate in " + r.mateIn + stats);
+                    mateLabel.setToolTipText(line);
+                    linesArea.append("Mate in " + r.mateIn + ": " + line + "\n");
+                    if (allowed) hintHandler.accept(r.line[0]);
+                } else {
+                    mateLabel.setText((r.complete ? "No forced mate within the move limit" : "No mate found in time")
+                            + String.format("   %dk nodes", r.nodes / 1000));
+                    mateLabel.setToolTipText(null);
+                }
+            });
+        });
+    }
+
+    private static MateSolver.Result solveMate(Position root, AtomicBoolean cancel) {
+        if (mateSolver == null) mateSolver = new MateSolver(Integer.getInteger("chess.mate.mb", 64));
+        return mateSolver.solve(root, Integer.getInteger("chess.mate.moves", 8), 0,
+                Long.getLong("chess.mate.seconds", 10) * 1000, cancel);
+    }
+
+    private void cancelMate() {
+        mateCancel.set(true);
+        mateButton.setEnabled(true);
+        mateLabel.setText(" ");
+        mateLabel.setToolTipText(null);
+    }
+
+    private void refresh() {
+        Analyzer.Snapshot s = analyzer.latest();
+        if (s == shown) return;
+        shown = s;
+        if (s == null) {
+            linesArea.setText("");
+            statusLabel.setText(analyseBox.isSelected() && allowed ? "Analysing..." : " ");
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.lines.length; i++) {
+            Search.Line line = s.lines[i];
+            if (line == null) continue;
+            int score = s.whiteToMove ? line.score : -line.score;
+            sb.append(i + 1).append(". ").append(String.format("%6s", formatScore(score))).append("  ");
+            for (int j = 0; j < Math.min(line.pv.length, MAX_LINE_MOVES); j++) {
+                sb.append(Move.toUci(line.pv[j])).append(' ');
+            }
+            sb.append('\n');
+        }
+        linesArea.setText(sb.toString());
+        statusLabel.setText(s.cached ? "Depth " + s.depth + " (cached)"
+                : "Depth " + s.depth + "   " + s.nodes / 1000 + "k nodes   " + s.nodesPerSecond / 1000 + "k n/s");
+        evalBar.setScore(s.whiteScore());
+    }
+
+    static String formatScore(int whiteScore) {
+        if (Search.isMate(whiteScore)) return Search.formatMate(whiteScore);
+        return String.format("%+.2f", whiteScore / (double) Evaluation.pieceValue(Position.PAWN));
+    }
+
+    // Fraction of an evaluation bar or graph that is White's. Logistic mapping: four pawns ahead fills
+    // roughly three quarters of it
+    static double whiteShare(int whiteScore) {
+        if (Search.isMate(whiteScore)) return whiteScore > 0 ? 1 : 0;
+        double pawns = whiteScore / (double) Evaluation.pieceValue(Position.PAWN);
+        return 1.0 / (1.0 + Math.exp(-pawns / 3.6));
+    }
+
+    private static class EvalBar extends JComponent {
+        private int score = 0;
+
+        EvalBar() {
+            setPreferredSize(new Dimension(22, 200));
+        }
+
+        void setScore(int whiteScore) {
+            score = whiteScore;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            int h = getHeight(), w = getWidth();
+            int whiteHeight = (int) Math.round(h * whiteShare(score));
+            g.setColor(new Color(40, 40, 40));
+            g.fillRect(0, 0, w, h - whiteHeight);
+            g.setColor(new Color(235, 235, 235));
+            g.fillRect(0, h - whiteHeight, w, whiteHeight);
+            g.setColor(Color.GRAY);
+            g.drawLine(0, h / 2, w, h / 2);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+// Background analysis of the board position. Each call to analyze() cancels the running search and
+// starts on the new position. The transposition table is kept between positions, and when the move the
+// engine expected is played the new search starts just below the depth the old one had reached.
+public class Analyzer {
+    public static class Snapshot {
+        public final long rootHash;
+        public final long expectedHash; // Position after the top line's first move
+        public final boolean whiteToMove;
+        public final int depth;
+        public final long nodes;
+        public final long nodesPerSecond;
+        public final Search.Line[] lines;
+        public final boolean cached; // From the analysis cache rather than the running search
+
+        Snapshot(long rootHash, long expectedHash, boolean whiteToMove, int depth, long nodes, long nanos,
+                 Search.Line[] lines, boolean cached) {
+            this.rootHash = rootHash;
+            this.expectedHash = expectedHash;
+            this.whiteToMove = whiteToMove;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.nodesPerSecond = nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+            this.lines = lines;
+            this.cached = cached;
+        }
+
+        // Score of the top line from White's point of view
+        public int whiteScore() {
+            return whiteToMove ? lines[0].score : -lines[0].score;
+        }
+    }
+
+    private Search search; // Made on the analysis thread when first needed, so idle boards cost no hash memory
+    private final AnalysisCache cache = AnalysisCache.shared();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chess-analysis");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private volatile Snapshot latest;
+    private AtomicBoolean currentCancel;
+    private AtomicBoolean hintCancel; // The hint search, which continuous analysis leaves running
+    private int multiPv = 3;
+
+    public Snapshot latest() {
+        return latest;
+    }
+
+    public synchronized boolean isRunning() {
+        return currentCancel != null;
+    }
+
+    public synchronized void setMultiPv(int lines) {
+        multiPv = lines;
+    }
+
+    public synchronized void analyze(Position root) {
+        stop();
+        Snapshot previous = latest;
+        int startDepth = 1;
+        if (previous != null && !previous.cached && previous.expectedHash == root.hash()) {
+            startDepth = Math.max(1, previous.depth - 1);
+        }
+        latest = cachedSnapshot(root);
+        start(root, Search.Limits.depth(0), startDepth, null);
+    }
+
+    // Best move for the position: taken from the running analysis if it already covers it, otherwise
+    // found by a short search, after which continuous analysis resumes if it was on
+    public synchronized void hint(Position root, long millis, IntConsumer callback) {
+        Snapshot s = latest;
+        if (s != null && s.rootHash == root.hash() && s.depth >= 6) {
+            callback.accept(s.lines[0].pv[0]);
+            return;
+        }
+        AnalysisCache.Entry cached = cache == null ? null : cache.probe(root);
+        if (cached != null) {
+            callback.accept(cached.move);
+            return;
+        }
+        boolean resume = isRunning();
+        stop();
+        start(root, Search.Limits.time(millis), 1, callback);
+        if (resume) start(root, Search.Limits.depth(0), 1, null);
+    }
+
+    public synchronized void stop() {
+        if (currentCancel != null) currentCancel.set(true);
+        currentCancel = null;
+    }
+
+    // Drops the hint being searched for, e.g. because a move was played before it came back
+    public synchronized void cancelHint() {
+        if (hintCancel != null) hintCancel.set(true);
+        hintCancel = null;
+    }
+
+    // The stored result for the position as a one-line snapshot, or null
+    private Snapshot cachedSnapshot(Position root) {
+        AnalysisCache.Entry e = cache == null ? null : cache.probe(root);
+        if (e == null) return null;
+        Position pos = root.copy();
+        pos.makeMove(e.move);
+        Search.Line[] lines = {new Search.Line(e.score, e.depth, new int[]{e.move})};
+        return new Snapshot(root.hash(), pos.hash(), root.sideToMove() == Position.WHITE, e.depth, 0, 0, lines, true);
+    }
+
+    private void start(Position root, Search.Limits limits, int startDepth, IntConsumer onDone) {
+        AtomicBoolean cancel = new AtomicBoolean(false);
+        if (onDone == null) {
+            currentCancel = cancel;
+        } else {
+            cancelHint();
+            hintCancel = cancel;
+        }
+        int lines = onDone == null ? multiPv : 1;
+        boolean whiteToMove = root.sideToMove() == Position.WHITE;
+        Position pos = root.copy();
+        long rootHash = pos.hash();
+
+        executor.execute(() -> {
+            if (cancel.get()) return;
+            if (search == null) {
+                search = new Search(new TranspositionTable(32), null);
+                search.setCache(cache);
+            }
+            Search.Result result = search.analyze(pos, limits, lines, startDepth, (depth, pvs, nodes, nanos) -> {
+                if (cancel.get() || onDone != null) return;
+                Snapshot shown = latest;
+                if (shown != null && shown.cached && depth <= shown.depth) return; // Not caught up yet
+                // Called between iterations, when the search has unwound back to the root
+                pos.makeMove(pvs[0].pv[0]);
+                long expected = pos.hash();
+                pos.unmakeMove(pvs[0].pv[0]);
+                latest = new Snapshot(rootHash, expected, whiteToMove, depth, nodes, nanos, pvs, false);
+            }, cancel);
+            if (onDone != null && !cancel.get() && result.bestMove != Move.NONE) onDone.accept(result.bestMove);
+        });
+    }
+}
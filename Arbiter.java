@@ -0,0 +1,255 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless validation of whole games. A game is one line: optionally "fen <six FEN fields>", an
+// optional "moves" keyword, then moves in UCI (e2e4, e7e8q) or SAN (Nf3, exd8=Q+); move numbers such
+// as "12." or "12...Nf6" and a trailing result are skipped. Each game is replayed up to its first
+// illegal move, and the verdict gives that ply and the status of the last legal position.
+//
+// Games are validated in chunks of CHUNK_GAMES on a thread pool. Each thread reuses one Position and
+// one move buffer for all its games; a game in UCI allocates nothing beyond splitting its line.
+public class Arbiter implements AutoCloseable {
+    public static final int CHUNK_GAMES = 256;
+
+    public enum Status {
+        ONGOING, CHECKMATE, STALEMATE, FIFTY_MOVES, REPETITION, INSUFFICIENT_MATERIAL;
+
+        public String label() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    public static class Verdict {
+        public final int illegalPly; // 1-based ply of the first illegal move, or 0 if every move is legal
+        public final String illegalMove; // The offending token, or null
+        public final int plies; // Legal moves replayed
+        public final Status status; // Of the position after the last legal move
+        public final int sideToMove; // In that position; the mated side for CHECKMATE
+
+        Verdict(int illegalPly, String illegalMove, int plies, Status status, int sideToMove) {
+            this.illegalPly = illegalPly;
+            this.illegalMove = illegalMove;
+            this.plies = plies;
+            this.status = status;
+            this.sideToMove = sideToMove;
+        }
+
+        public boolean legal() {
+            return illegalPly == 0;
+        }
+
+        // Tab-separated: "legal", plies, status, or "illegal", ply, move, status
+        public String toLine() {
+            String status = this.status.label();
+            if (this.status == Status.CHECKMATE) status += sideToMove == Position.WHITE ? " 0-1" : " 1-0";
+            return legal() ? "legal\t" + plies + '\t' + status : "illegal\t" + illegalPly + '\t' + illegalMove + '\t' + status;
+        }
+    }
+
+    private static final Position START = Position.fromFen(Position.START_FEN);
+
+    // Per-thread state, allocated once
+    private static final class Worker {
+        final Position pos = Position.fromFen(Position.START_FEN);
+        final int[] moves = new int[Position.MAX_MOVES];
+    }
+
+    private final ExecutorService pool;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    public Arbiter(int threads) {
+        AtomicInteger ids = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "arbiter-" + ids.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Validates one game on the calling thread
+    public Verdict validate(String game) {
+        return validate(game, workers.get());
+    }
+
+    // Validates the games in parallel; the verdicts are in input order
+    public List<Verdict> validateAll(List<String> games) {
+        List<CompletableFuture<Verdict[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < games.size(); from += CHUNK_GAMES) {
+            List<String> chunk = games.subList(from, Math.min(games.size(), from + CHUNK_GAMES));
+            chunks.add(CompletableFuture.supplyAsync(() -> validateChunk(chunk), pool));
+        }
+        List<Verdict> verdicts = new ArrayList<>(games.size());
+        for (CompletableFuture<Verdict[]> c : chunks) {
+            for (Verdict v : c.join()) verdicts.add(v);
+        }
+        return verdicts;
+    }
+
+    private Verdict[] validateChunk(List<String> games) {
+        Worker w = workers.get();
+        Verdict[] verdicts = new Verdict[games.size()];
+        for (int i = 0; i < verdicts.length; i++) {
+            try {
+                verdicts[i] = validate(games.get(i), w);
+            } catch (RuntimeException e) {
+                // A setup fromFen accepts but the move generator cannot play from; only this game is lost
+                verdicts[i] = badFen();
+            }
+        }
+        return verdicts;
+    }
+
+    private static Verdict validate(String game, Worker w) {
+        Position pos = w.pos;
+        String[] tokens = game.trim().split("\\s+");
+        int t = 0;
+        if (tokens.length >= 7 && tokens[0].equals("fen")) {
+            try {
+                pos.set(Position.fromFen(String.join(" ", java.util.Arrays.copyOfRange(tokens, 1, 7))));
+            } catch (IllegalArgumentException e) {
+                return badFen();
+            }
+            t = 7;
+        } else {
+            pos.set(START);
+        }
+        if (t < tokens.length && tokens[t].equals("moves")) t++;
+
+        int plies = 0;
+        for (; t < tokens.length; t++) {
+            String token = stripMoveNumber(tokens[t]);
+            if (token.isEmpty() || isResult(token)) continue;
+            int n = pos.generateLegalMoves(w.moves);
+            int move = n == 0 ? Move.NONE : find(pos, w.moves, n, token);
+            if (move == Move.NONE) return new Verdict(plies + 1, token, plies, status(pos, w.moves), pos.sideToMove());
+            pos.makeMove(move);
+            plies++;
+        }
+        return new Verdict(0, null, plies, status(pos, w.moves), pos.sideToMove());
+    }
+
+    private static Verdict badFen() {
+        return new Verdict(1, "fen", 0, Status.ONGOING, Position.WHITE);
+    }
+
+    private static String stripMoveNumber(String token) {
+        if (token.isEmpty() || !Character.isDigit(token.charAt(0))) return token;
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) i++;
+        if (i == token.length() || token.charAt(i) != '.') return token; // "1-0" and friends
+        while (i < token.length() && token.charAt(i) == '.') i++;
+        return token.substring(i);
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    // The legal move the token names, or Move.NONE
+    private static int find(Position pos, int[] moves, int n, String token) {
+        if (isUci(token)) {
+            int from = ('8' - token.charAt(1)) * 8 + token.charAt(0) - 'a';
+            int to = ('8' - token.charAt(3)) * 8 + token.charAt(2) - 'a';
+            int promotion = token.length() == 5 ? " pnbrqk".indexOf(token.charAt(4)) : 0;
+            for (int i = 0; i < n; i++) {
+                int m = moves[i];
+                if (Move.from(m) == from && Move.to(m) == to && Move.promotion(m) == promotion) return m;
+            }
+            return Move.NONE;
+        }
+        return Pgn.parseSan(pos, token);
+    }
+
+    private static boolean isUci(String token) {
+        int len = token.length();
+        if (len != 4 && len != 5) return false;
+        if (len == 5 && "nbrq".indexOf(token.charAt(4)) < 0) return false;
+        return token.charAt(0) >= 'a' && token.charAt(0) <= 'h' && token.charAt(1) >= '1' && token.charAt(1) <= '8'
+                && token.charAt(2) >= 'a' && token.charAt(2) <= 'h' && token.charAt(3) >= '1' && token.charAt(3) <= '8';
+    }
+
+    static Status status(Position pos, int[] buffer) {
+        if (pos.generateLegalMoves(buffer) == 0) return pos.inCheck() ? Status.CHECKMATE : Status.STALEMATE;
+        if (pos.halfmoveClock() >= 100) return Status.FIFTY_MOVES;
+        if (pos.repetitionCount() >= 2) return Status.REPETITION;
+        if (insufficientMaterial(pos)) return Status.INSUFFICIENT_MATERIAL;
+        return Status.ONGOING;
+    }
+
+    // King against king with at most one minor piece, or bishops that all stand on one colour
+    private static boolean insufficientMaterial(Position pos) {
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            if ((pos.pieces(color, Position.PAWN) | pos.pieces(color, Position.ROOK) | pos.pieces(color, Position.QUEEN)) != 0) {
+                return false;
+            }
+        }
+        long knights = pos.pieces(Position.WHITE, Position.KNIGHT) | pos.pieces(Position.BLACK, Position.KNIGHT);
+        long bishops = pos.pieces(Position.WHITE, Position.BISHOP) | pos.pieces(Position.BLACK, Position.BISHOP);
+        if (Long.bitCount(knights | bishops) <= 1) return true;
+        long light = 0x55AA_55AA_55AA_55AAL; // Squares where row + col is even
+        return knights == 0 && ((bishops & light) == 0 || (bishops & ~light) == 0);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // java Arbiter <file|-> [threads=all cores]
+    // Reads one game per line and writes one verdict per line, in order
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java Arbiter <file|-> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        BufferedReader in = args[0].equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        long start = System.nanoTime();
+        long games = 0, illegal = 0;
+        try (Arbiter arbiter = new Arbiter(threads); BufferedReader reader = in) {
+            // A window of chunks in flight keeps memory flat for inputs of any size
+            ArrayDeque<CompletableFuture<List<Verdict>>> window = new ArrayDeque<>();
+            List<String> chunk = new ArrayList<>(CHUNK_GAMES * threads);
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null && !line.trim().isEmpty()) chunk.add(line);
+                if (line == null || chunk.size() == CHUNK_GAMES * threads) {
+                    List<String> batch = chunk;
+                    window.add(CompletableFuture.supplyAsync(() -> arbiter.validateAll(batch)));
+                    chunk = new ArrayList<>(CHUNK_GAMES * threads);
+                }
+                while (!window.isEmpty() && (window.size() > 2 || window.peek().isDone() || line == null)) {
+                    for (Verdict v : window.poll().join()) {
+                        out.write(v.toLine());
+                        out.write('\n');
+                        games++;
+                        if (!v.legal()) illegal++;
+                    }
+                }
+                if (line == null) break;
+            }
+        }
+        out.flush();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d games (%d with an illegal move) in %.2f s (%.0f games/s) on %d threads%n",
+                games, illegal, seconds, games / seconds, threads);
+    }
+}
@@ -0,0 +1,236 @@
+public final class Attacks {
+    private static final int[] ROOK_DR = {-1, 1, 0, 0};
+    private static final int[] ROOK_DC = {0, 0, -1, 1};
+    private static final int[] BISHOP_DR = {-1, -1, 1, 1};
+    private static final int[] BISHOP_DC = {-1, 1, -1, 1};
+
+    // Squares strictly between two aligned squares, and the full line through them (0 if not aligned)
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    // Fancy magic bitboards: (occupancy & mask) * magic >>> shift indexes a per-square slice of one shared table
+    private static final long[] ROOK_MASK = new long[64], BISHOP_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = new long[64], BISHOP_MAGIC = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64], BISHOP_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64], BISHOP_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE = new long[102400];
+    private static final long[] BISHOP_TABLE = new long[5248];
+
+    // Magics found by initMagics' search for this square layout. Filling the tables from them is a single
+    // pass over the occupancy subsets; the search is several times slower, so it only runs if one is rejected.
+    private static final long[] KNOWN_ROOK_MAGICS = {
+            0x0A80004000801220L, 0x8040004010002008L, 0x2080200010008008L, 0x1100100008210004L,
+            0xC200209084020008L, 0x2100010004000208L, 0x0400081000822421L, 0x0200010422048844L,
+            0x0800800080400024L, 0x0001402000401000L, 0x3000801000802001L, 0x4400800800100083L,
+            0x0904802402480080L, 0x4040800400020080L, 0x0018808042000100L, 0x4040800080004100L,
+            0x0040048001458024L, 0x00A0004000205000L, 0x3100808010002000L, 0x4825010010000820L,
+            0x5004808008000401L, 0x2024818004000A00L, 0x0005808002000100L, 0x2100060004806104L,
+            0x0080400880008421L, 0x4062220600410280L, 0x010A004A00108022L, 0x0000100080080080L,
+            0x0021000500080010L, 0x0044000202001008L, 0x0000100400080102L, 0xC020128200040545L,
+            0x0080002000400040L, 0x0000804000802004L, 0x0000120022004080L, 0x010A386103001001L,
+            0x9010080080800400L, 0x8440020080800400L, 0x0004228824001001L, 0x000000490A000084L,
+            0x0080002000504000L, 0x200020005000C000L, 0x0012088020420010L, 0x0010010080080800L,
+            0x0085001008010004L, 0x0002000204008080L, 0x0040413002040008L, 0x0000304081020004L,
+            0x0080204000800080L, 0x3008804000290100L, 0x1010100080200080L, 0x2008100208028080L,
+            0x5000850800910100L, 0x8402019004680200L, 0x0120911028020400L, 0x0000008044010200L,
+            0x0020850200244012L, 0x0020850200244012L, 0x0000102001040841L, 0x140900040A100021L,
+            0x000200282410A102L, 0x000200282410A102L, 0x000200282410A102L, 0x4048240043802106L
+    };
+    private static final long[] KNOWN_BISHOP_MAGICS = {
+            0x40106000A1160020L, 0x0020010250810120L, 0x2010010220280081L, 0x002806004050C040L,
+            0x0002021018000000L, 0x2001112010000400L, 0x0881010120218080L, 0x1030820110010500L,
+            0x0000120222042400L, 0x2000020404040044L, 0x8000480094208000L, 0x0003422A02000001L,
+            0x000A220210100040L, 0x8004820202226000L, 0x0018234854100800L, 0x0100004042101040L,
+            0x0004001004082820L, 0x0010000810010048L, 0x1014004208081300L, 0x2080818802044202L,
+            0x0040880C00A00100L, 0x0080400200522010L, 0x0001000188180B04L, 0x0080249202020204L,
+            0x1004400004100410L, 0x00013100A0022206L, 0x2148500001040080L, 0x4241080011004300L,
+            0x4020848004002000L, 0x10101380D1004100L, 0x0008004422020284L, 0x01010A1041008080L,
+            0x0808080400082121L, 0x0808080400082121L, 0x0091128200100C00L, 0x0202200802010104L,
+            0x8C0A020200440085L, 0x01A0008080B10040L, 0x0889520080122800L, 0x100902022202010AL,
+            0x04081A0816002000L, 0x0000681208005000L, 0x8170840041008802L, 0x0A00004200810805L,
+            0x0830404408210100L, 0x2602208106006102L, 0x1048300680802628L, 0x2602208106006102L,
+            0x0602010120110040L, 0x0941010801043000L, 0x000040440A210428L, 0x0008240020880021L,
+            0x0400002012048200L, 0x00AC102001210220L, 0x0220021002009900L, 0x84440C080A013080L,
+            0x0001008044200440L, 0x0004C04410841000L, 0x2000500104011130L, 0x1A0C010011C20229L,
+            0x0044800112202200L, 0x0434804908100424L, 0x0300404822C08200L, 0x48081010008A2A80L
+    };
+    private static final long[] MAGIC_SEEDS = {255, 16645, 15100, 12281, 32803, 55013, 10316, 728};
+
+    static {
+        int[] knightDr = {-2, -2, -1, -1, 1, 1, 2, 2};
+        int[] knightDc = {-1, 1, -2, 2, -2, 2, -1, 1};
+        int[] kingDr = {-1, -1, -1, 0, 0, 1, 1, 1};
+        int[] kingDc = {-1, 0, 1, -1, 1, -1, 0, 1};
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = leaper(sq, knightDr, knightDc);
+            KING[sq] = leaper(sq, kingDr, kingDc);
+            PAWN[Position.WHITE][sq] = leaper(sq, new int[]{-1, -1}, new int[]{-1, 1});
+            PAWN[Position.BLACK][sq] = leaper(sq, new int[]{1, 1}, new int[]{-1, 1});
+        }
+
+        initMagics(ROOK_DR, ROOK_DC, KNOWN_ROOK_MAGICS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET, ROOK_TABLE);
+        initMagics(BISHOP_DR, BISHOP_DC, KNOWN_BISHOP_MAGICS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET, BISHOP_TABLE);
+
+        for (int a = 0; a < 64; a++) {
+            for (int d = 0; d < 8; d++) {
+                int dr = d < 4 ? ROOK_DR[d] : BISHOP_DR[d - 4];
+                int dc = d < 4 ? ROOK_DC[d] : BISHOP_DC[d - 4];
+                long full = ray(a, dr, dc) | ray(a, -dr, -dc) | (1L << a);
+                long path = 0L;
+                int r = (a >>> 3) + dr, c = (a & 7) + dc;
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    int b = r * 8 + c;
+                    BETWEEN[a][b] = path;
+                    LINE[a][b] = full;
+                    path |= 1L << b;
+                    r += dr;
+                    c += dc;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    // Squares attacked by a pawn of the given colour standing on sq
+    public static long pawn(int color, int sq) {
+        return PAWN[color][sq];
+    }
+
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSET[sq] + (int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSET[sq] + (int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    public static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    private static void initMagics(int[] dr, int[] dc, long[] known, long[] masks, long[] magics,
+                                   int[] shifts, int[] offsets, long[] table) {
+        long[] occupancy = new long[4096];
+        long[] reference = new long[4096];
+        int[] epoch = new int[4096];
+        int[] attempt = {0};
+        int offset = 0;
+
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq >>> 3, c = sq & 7;
+            long edges = ((0xFFL | 0xFFL << 56) & ~(0xFFL << (r * 8)))
+                    | ((0x0101010101010101L | 0x8080808080808080L) & ~(0x0101010101010101L << c));
+            long mask = slider(sq, 0L, dr, dc) & ~edges;
+            masks[sq] = mask;
+            shifts[sq] = 64 - Long.bitCount(mask);
+            offsets[sq] = offset;
+
+            // Carry-Rippler enumeration of every subset of the mask
+            int size = 0;
+            long b = 0L;
+            do {
+                occupancy[size] = b;
+                reference[size] = slider(sq, b, dr, dc);
+                size++;
+                b = (b - mask) & mask;
+            } while (b != 0);
+
+            long magic = known[sq];
+            if (!fillMagic(magic, shifts[sq], offset, size, occupancy, reference, epoch, attempt, table)) {
+                long[] seed = {MAGIC_SEEDS[7 - r]};
+                do {
+                    do {
+                        magic = nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+                    } while (Long.bitCount((mask * magic) >>> 56) < 6);
+                } while (!fillMagic(magic, shifts[sq], offset, size, occupancy, reference, epoch, attempt, table));
+            }
+            magics[sq] = magic;
+            offset += size;
+        }
+    }
+
+    // Writes one square's slice of the table; fails on a destructive collision. The epoch array
+    // avoids clearing the slice between candidates.
+    private static boolean fillMagic(long magic, int shift, int offset, int size, long[] occupancy,
+                                     long[] reference, int[] epoch, int[] attempt, long[] table) {
+        int current = ++attempt[0];
+        for (int i = 0; i < size; i++) {
+            int local = (int) ((occupancy[i] * magic) >>> shift);
+            if (epoch[local] < current) {
+                epoch[local] = current;
+                table[offset + local] = reference[i];
+            } else if (table[offset + local] != reference[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // xorshift64* generator
+    private static long nextRandom(long[] seed) {
+        long s = seed[0];
+        s ^= s >>> 12;
+        s ^= s << 25;
+        s ^= s >>> 27;
+        seed[0] = s;
+        return s * 2685821657736338717L;
+    }
+
+    private static long leaper(int sq, int[] dr, int[] dc) {
+        long attacks = 0L;
+        int r = sq >>> 3, c = sq & 7;
+        for (int i = 0; i < dr.length; i++) {
+            int nr = r + dr[i], nc = c + dc[i];
+            if (nr >= 0 && nr < 8 && nc >= 0 && nc < 8) attacks |= 1L << (nr * 8 + nc);
+        }
+        return attacks;
+    }
+
+    private static long slider(int sq, long occupied, int[] dr, int[] dc) {
+        long attacks = 0L;
+        for (int i = 0; i < dr.length; i++) {
+            int r = (sq >>> 3) + dr[i], c = (sq & 7) + dc[i];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                long bit = 1L << (r * 8 + c);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+                r += dr[i];
+                c += dc[i];
+            }
+        }
+        return attacks;
+    }
+
+    private static long ray(int sq, int dr, int dc) {
+        long bits = 0L;
+        int r = (sq >>> 3) + dr, c = (sq & 7) + dc;
+        while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+            bits |= 1L << (r * 8 + c);
+            r += dr;
+            c += dc;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,45 @@
+// Search benchmark over a fixed set of positions: node counts at a fixed depth (a signature that
+// changes whenever the search changes) and the depth reached in a fixed time.
+public final class Bench {
+    private static final String[] POSITIONS = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+            "r2q1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 9",
+            "2r3k1/pp3pp1/4p2p/3pP3/3P4/P4N2/1P3PPP/2R3K1 w - - 0 25",
+            "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 1",
+            "8/5pk1/6p1/8/5P2/6PK/8/8 w - - 0 40",
+            "8/8/1k6/2p5/2P1K3/8/4R3/3r4 w - - 0 1",
+    };
+
+    private Bench() {
+    }
+
+    // java Bench [depth=7] [millis=1000]
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+        long totalNodes = 0, totalNanos = 0;
+        for (String fen : POSITIONS) {
+            Search search = new Search(new TranspositionTable(16), null);
+            Search.Result r = search.search(Position.fromFen(fen), Search.Limits.depth(depth));
+            totalNodes += r.nodes;
+            totalNanos += r.nanos;
+            System.out.printf("%-72s %12d nodes  %s%n", fen, r.nodes, Move.toUci(r.bestMove));
+        }
+        System.out.printf("depth %d: %d nodes in %.2f s (%d nps)%n", depth, totalNodes, totalNanos / 1e9,
+                totalNodes * 1_000_000_000L / Math.max(1, totalNanos));
+
+        int depthSum = 0;
+        for (String fen : POSITIONS) {
+            Search search = new Search(new TranspositionTable(16), null);
+            depthSum += search.search(Position.fromFen(fen), Search.Limits.time(millis)).depth;
+        }
+        System.out.printf("%d ms: average depth %.2f%n", millis, depthSum / (double) POSITIONS.length);
+    }
+}
@@ -0,0 +1,271 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BoardPanel extends JComponent {
+    public interface SquareListener {
+        void squareClicked(int row, int col);
+    }
+
+    private static final int SIZE = 8;
+    private static final int ANIMATION_MS = 160;
+    private static final int FRAME_MS = 15;
+
+    private String[][] board;
+    private final SquareListener listener;
+
+    private final Color lightColor = new Color(240, 217, 181);
+    private final Color darkColor = new Color(181, 136, 99);
+    private final Color selectedColor = new Color(137, 196, 244);
+    private final Color validMoveColor = new Color(100, 150, 100, 150); // Semi-transparent green
+
+    // Highlight state; squares are indexed row * 8 + col
+    private int selectedSquare = -1;
+    private long highlightMask = 0L;
+
+    // Pre-rendered piece images, rebuilt only when the square size or device scale changes
+    private final Map<String, BufferedImage> pieceImages = new HashMap<>();
+    private int cachedPixelSize = -1;
+
+    // Move animation state
+    private final Timer animationTimer;
+    private String animatedPiece = null;
+    private int animFromRow, animFromCol, animToRow, animToCol;
+    private long animStart;
+    private Rectangle lastSpriteBounds = null;
+
+    public BoardPanel(String[][] board, SquareListener listener) {
+        this.board = board;
+        this.listener = listener;
+        setPreferredSize(new Dimension(800, 800));
+        setOpaque(true);
+
+        animationTimer = new Timer(FRAME_MS, e -> stepAnimation());
+        animationTimer.setCoalesce(true);
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (!isEnabled() || animatedPiece != null) return;
+                int squareSize = squareSize();
+                if (squareSize == 0 || e.getX() < originX() || e.getY() < originY()) return;
+                int col = (e.getX() - originX()) / squareSize;
+                int row = (e.getY() - originY()) / squareSize;
+                if (row >= 0 && row < SIZE && col >= 0 && col < SIZE) {
+                    BoardPanel.this.listener.squareClicked(row, col);
+                }
+            }
+        });
+    }
+
+    // --- Public API ---
+
+    public void repaintSquare(int r, int c) {
+        repaint(squareBounds(r, c));
+    }
+
+    public void setHighlights(int r, int c, long targets) {
+        int newSelected = r * SIZE + c;
+        repaintChanged(selectedSquare, highlightMask, newSelected, targets);
+        selectedSquare = newSelected;
+        highlightMask = targets;
+    }
+
+    public void clearHighlights() {
+        repaintChanged(selectedSquare, highlightMask, -1, 0L);
+        selectedSquare = -1;
+        highlightMask = 0L;
+    }
+
+    // Switches to another board array, repainting only the squares whose piece differs
+    public void showBoard(String[][] squares) {
+        if (squares == board) return;
+        finishAnimation();
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                if (!board[r][c].equals(squares[r][c])) repaintSquare(r, c);
+            }
+        }
+        board = squares;
+    }
+
+    public void animateMove(int r1, int c1, int r2, int c2) {
+        finishAnimation();
+        animatedPiece = board[r2][c2];
+        animFromRow = r1;
+        animFromCol = c1;
+        animToRow = r2;
+        animToCol = c2;
+        animStart = System.nanoTime();
+        lastSpriteBounds = squareBounds(r1, c1);
+        repaintSquare(r1, c1);
+        repaintSquare(r2, c2);
+        animationTimer.start();
+    }
+
+    // --- Dirty region tracking ---
+
+    private void repaintChanged(int oldSelected, long oldMask, int newSelected, long newMask) {
+        if (oldSelected != newSelected) {
+            if (oldSelected >= 0) repaintSquare(oldSelected / SIZE, oldSelected % SIZE);
+            if (newSelected >= 0) repaintSquare(newSelected / SIZE, newSelected % SIZE);
+        }
+        long changed = oldMask ^ newMask;
+        while (changed != 0) {
+            int sq = Long.numberOfTrailingZeros(changed);
+            repaintSquare(sq / SIZE, sq % SIZE);
+            changed &= changed - 1;
+        }
+    }
+
+    private void stepAnimation() {
+        Rectangle sprite = spriteBounds();
+        if (sprite == null) {
+            finishAnimation();
+            return;
+        }
+        Rectangle dirty = new Rectangle(sprite);
+        if (lastSpriteBounds != null) dirty.add(lastSpriteBounds);
+        lastSpriteBounds = sprite;
+        repaint(dirty);
+    }
+
+    private void finishAnimation() {
+        if (animatedPiece == null) return;
+        animationTimer.stop();
+        if (lastSpriteBounds != null) repaint(lastSpriteBounds);
+        repaintSquare(animToRow, animToCol);
+        animatedPiece = null;
+        lastSpriteBounds = null;
+    }
+
+    private Rectangle spriteBounds() {
+        double t = (System.nanoTime() - animStart) / 1_000_000.0 / ANIMATION_MS;
+        if (t >= 1.0) return null;
+        t = 1 - (1 - t) * (1 - t); // ease out
+        int squareSize = squareSize();
+        int x = originX() + (int) Math.round((animFromCol + (animToCol - animFromCol) * t) * squareSize);
+        int y = originY() + (int) Math.round((animFromRow + (animToRow - animFromRow) * t) * squareSize);
+        return new Rectangle(x, y, squareSize, squareSize);
+    }
+
+    // --- Geometry ---
+
+    private int squareSize() {
+        return Math.min(getWidth(), getHeight()) / SIZE;
+    }
+
+    private int originX() {
+        return (getWidth() - squareSize() * SIZE) / 2;
+    }
+
+    private int originY() {
+        return (getHeight() - squareSize() * SIZE) / 2;
+    }
+
+    private Rectangle squareBounds(int r, int c) {
+        int squareSize = squareSize();
+        return new Rectangle(originX() + c * squareSize, originY() + r * squareSize, squareSize, squareSize);
+    }
+
+    // --- Painting ---
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        EngineEvents.BoardPaintEvent paintEvent = new EngineEvents.BoardPaintEvent();
+        paintEvent.begin();
+        Graphics2D g2 = (Graphics2D) g;
+        int squareSize = squareSize();
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+        g2.setColor(getBackground() != null ? getBackground() : Color.DARK_GRAY);
+        g2.fill(clip);
+        if (squareSize == 0) return;
+
+        double scale = g2.getTransform().getScaleX();
+        ensurePieceImages(squareSize, scale);
+
+        int x0 = originX(), y0 = originY();
+        int firstCol = Math.max(0, (clip.x - x0) / squareSize);
+        int lastCol = Math.min(SIZE - 1, (clip.x + clip.width - x0) / squareSize);
+        int firstRow = Math.max(0, (clip.y - y0) / squareSize);
+        int lastRow = Math.min(SIZE - 1, (clip.y + clip.height - y0) / squareSize);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                int x = x0 + c * squareSize, y = y0 + r * squareSize;
+                int sq = r * SIZE + c;
+                g2.setColor((r + c) % 2 == 0 ? lightColor : darkColor);
+                g2.fillRect(x, y, squareSize, squareSize);
+                if (sq == selectedSquare) {
+                    g2.setColor(selectedColor);
+                    g2.fillRect(x, y, squareSize, squareSize);
+                } else if ((highlightMask & (1L << sq)) != 0) {
+                    g2.setColor(validMoveColor);
+                    g2.fillRect(x, y, squareSize, squareSize);
+                }
+                boolean hidden = animatedPiece != null && r == animToRow && c == animToCol;
+                if (!hidden) drawPiece(g2, board[r][c], x, y, squareSize);
+            }
+        }
+
+        if (animatedPiece != null) {
+            Rectangle sprite = spriteBounds();
+            if (sprite != null) drawPiece(g2, animatedPiece, sprite.x, sprite.y, squareSize);
+        }
+
+        if (paintEvent.shouldCommit()) {
+            paintEvent.squares = (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+            paintEvent.commit();
+        }
+    }
+
+    private void drawPiece(Graphics2D g2, String piece, int x, int y, int squareSize) {
+        if (piece.isEmpty()) return;
+        BufferedImage img = pieceImages.get(piece);
+        if (img == null) return;
+        g2.drawImage(img, x, y, squareSize, squareSize, null);
+    }
+
+    private void ensurePieceImages(int squareSize, double scale) {
+        int pixelSize = (int) Math.ceil(squareSize * scale);
+        if (pixelSize == cachedPixelSize) return;
+        pieceImages.clear();
+        cachedPixelSize = pixelSize;
+
+        Font font = new Font("SansSerif", Font.PLAIN, (int) (pixelSize * 0.75));
+        String[] pieces = {"wp", "wn", "wb", "wr", "wq", "wk", "bp", "bn", "bb", "br", "bq", "bk"};
+        for (String piece : pieces) {
+            BufferedImage img = new BufferedImage(pixelSize, pixelSize, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D ig = img.createGraphics();
+            ig.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            ig.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            ig.setFont(font);
+            ig.setColor(Color.BLACK);
+            String glyph = getPieceUnicode(piece);
+            FontMetrics fm = ig.getFontMetrics();
+            int gx = (pixelSize - fm.stringWidth(glyph)) / 2;
+            int gy = (pixelSize - fm.getHeight()) / 2 + fm.getAscent();
+            ig.drawString(glyph, gx, gy);
+            ig.dispose();
+            pieceImages.put(piece, img);
+        }
+    }
+
+    private static String getPieceUnicode(String piece) {
+        switch (piece) {
+            case "wp": return "♙"; case "bp": return "♟";
+            case "wr": return "♖"; case "br": return "♜";
+            case "wn": return "♘"; case "bn": return "♞";
+            case "wb": return "♗"; case "bb": return "♝";
+            case "wq": return "♕"; case "bq": return "♛";
+            case "wk": return "♔"; case "bk": return "♚";
+            default: return "?";
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pushes a live game to spectators over TCP. Each message is one text line, encoded once and shared
+// by every subscriber:
+//   snapshot <seq> <fen> <whiteMs> <blackMs>     sent on connect and after a resync
+//   move <seq> <uci> <whiteMs> <blackMs>         one per move; clocks are -1 without a clock
+// A spectator applies each move to the last snapshot. All sockets are served by one selector thread.
+// A subscriber that falls MAX_QUEUED messages behind has its backlog replaced by the latest snapshot,
+// so a slow reader costs a bounded amount of memory and never holds up the others.
+public class BroadcastHub implements Closeable {
+    private static final int MAX_QUEUED = 64;
+    private static final int MAX_GATHER = 16; // Queued lines handed to one write call
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Message> published = new ConcurrentLinkedQueue<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(256);
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private volatile boolean running = true;
+
+    private long seq; // Guarded by this
+    private byte[] snapshot; // Selector thread only: the state after the last message it handed out
+
+    private final AtomicLong subscriberCount = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    private static final class Message {
+        final byte[] line;
+        final byte[] snapshot; // The position after this message, for resyncs and late joiners
+
+        Message(byte[] line, byte[] snapshot) {
+            this.line = line;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final class Subscriber {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        int headOffset; // Bytes of the queue head already written
+        boolean blocked; // Waiting for OP_WRITE
+
+        Subscriber(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private BroadcastHub(int port) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        snapshot = encode("snapshot 0 " + Position.START_FEN + " -1 -1");
+        thread = new Thread(this::serve, "broadcast-hub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Listens on the loopback interface; port 0 picks a free port
+    public static BroadcastHub start(int port) throws IOException {
+        return new BroadcastHub(port);
+    }
+
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    public long subscribers() {
+        return subscriberCount.get();
+    }
+
+    // Slow subscribers whose backlog was replaced by a snapshot
+    public long resyncs() {
+        return resyncs.get();
+    }
+
+    // --- Publishing (any single thread) ---
+
+    // A new game or set-up position; spectators drop what they had
+    public synchronized void publishPosition(Position pos, long whiteMs, long blackMs) {
+        seq++;
+        byte[] line = encode("snapshot " + seq + ' ' + pos.toFen() + ' ' + whiteMs + ' ' + blackMs);
+        published.add(new Message(line, line));
+        selector.wakeup();
+    }
+
+    // A move, with the position after it for late joiners
+    public synchronized void publishMove(int move, Position after, long whiteMs, long blackMs) {
+        seq++;
+        published.add(new Message(encode("move " + seq + ' ' + Move.toUci(move) + ' ' + whiteMs + ' ' + blackMs),
+                encode("snapshot " + seq + ' ' + after.toFen() + ' ' + whiteMs + ' ' + blackMs)));
+        selector.wakeup();
+    }
+
+    private static byte[] encode(String line) {
+        return (line + '\n').getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // --- Selector thread ---
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                // Queue everything published since the last pass, then write each backlog in one call
+                Message message;
+                boolean any = false;
+                while ((message = published.poll()) != null) {
+                    snapshot = message.snapshot;
+                    for (Subscriber s : subscribers) enqueue(s, message.line);
+                    any = true;
+                }
+                if (any) {
+                    for (int i = subscribers.size() - 1; i >= 0; i--) {
+                        Subscriber s = subscribers.get(i);
+                        if (!s.blocked) flush(s);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Subscriber s = (Subscriber) key.attachment();
+                        if (key.isReadable()) read(s);
+                        if (key.isValid() && key.isWritable()) flush(s);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) System.err.println("Broadcast hub stopped: " + e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Subscriber s = new Subscriber(channel, channel.register(selector, SelectionKey.OP_READ, null));
+            s.key.attach(s);
+            subscribers.add(s);
+            subscriberCount.incrementAndGet();
+            enqueue(s, snapshot);
+            flush(s);
+        }
+    }
+
+    private void enqueue(Subscriber s, byte[] message) {
+        if (s.queue.size() >= MAX_QUEUED) {
+            // Keep a partly written head so the line stays whole, then skip to the snapshot, which
+            // already includes this message
+            byte[] head = s.headOffset > 0 ? s.queue.peek() : null;
+            s.queue.clear();
+            if (head != null) s.queue.add(head);
+            s.queue.add(snapshot);
+            resyncs.incrementAndGet();
+            return;
+        }
+        s.queue.add(message);
+    }
+
+    private void flush(Subscriber s) {
+        try {
+            while (!s.queue.isEmpty()) {
+                int count = 0;
+                long pending = 0;
+                for (byte[] line : s.queue) {
+                    int offset = count == 0 ? s.headOffset : 0;
+                    gather[count++] = ByteBuffer.wrap(line, offset, line.length - offset);
+                    pending += line.length - offset;
+                    if (count == MAX_GATHER) break;
+                }
+                long written = s.channel.write(gather, 0, count);
+                boolean complete = written == pending;
+                while (written > 0) {
+                    int left = s.queue.peek().length - s.headOffset;
+                    if (written < left) {
+                        s.headOffset += (int) written;
+                        break;
+                    }
+                    written -= left;
+                    s.queue.poll();
+                    s.headOffset = 0;
+                }
+                if (!complete) {
+                    if (!s.blocked) s.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    s.blocked = true;
+                    return;
+                }
+            }
+            if (s.blocked) s.key.interestOps(SelectionKey.OP_READ);
+            s.blocked = false;
+        } catch (IOException e) {
+            drop(s);
+        }
+    }
+
+    // Spectators have nothing to say; reading only notices when they leave
+    private void read(Subscriber s) {
+        try {
+            scratch.clear();
+            if (s.channel.read(scratch) < 0) drop(s);
+        } catch (IOException e) {
+            drop(s);
+        }
+    }
+
+    private void drop(Subscriber s) {
+        s.key.cancel();
+        try {
+            s.channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+        if (subscribers.remove(s)) subscriberCount.decrementAndGet();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber s : new ArrayList<>(subscribers)) drop(s);
+        server.close();
+        selector.close();
+    }
+}
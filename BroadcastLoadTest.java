@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fan-out load test for BroadcastHub: connects many spectators over loopback, publishes a random game
+// at a fixed rate and measures delivery latency, ordering and the hub thread's CPU time. A share of
+// the spectators never read, to show that slow consumers are resynced instead of slowing the rest.
+public final class BroadcastLoadTest {
+    private static final class Spectator {
+        final SocketChannel channel;
+        final StringBuilder partial = new StringBuilder();
+        long lastSeq = -1;
+        long received;
+
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final AtomicLongArray publishNanos;
+    private final long[] latencies;
+    private int latencyCount;
+    private long orderErrors;
+    private long totalReceived;
+
+    private BroadcastLoadTest(int moves, int spectators) {
+        publishNanos = new AtomicLongArray(moves + 2);
+        latencies = new long[moves * spectators];
+    }
+
+    // java BroadcastLoadTest [spectators=2000] [moves=500] [movesPerSecond=50] [slowPercent=5]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int spectators = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int slowPercent = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        new BroadcastLoadTest(moves, spectators).run(spectators, moves, rate, slowPercent);
+    }
+
+    private void run(int spectatorCount, int moves, int rate, int slowPercent) throws IOException, InterruptedException {
+        try (BroadcastHub hub = BroadcastHub.start(0); Selector selector = Selector.open()) {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), hub.port());
+            List<Spectator> fast = new ArrayList<>();
+            List<SocketChannel> slow = new ArrayList<>();
+            for (int i = 0; i < spectatorCount; i++) {
+                SocketChannel channel = SocketChannel.open();
+                if (i * 100L < (long) spectatorCount * slowPercent) {
+                    channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024);
+                    channel.connect(address);
+                    slow.add(channel);
+                    continue;
+                }
+                channel.connect(address);
+                channel.configureBlocking(false);
+                Spectator s = new Spectator(channel);
+                channel.register(selector, SelectionKey.OP_READ, s);
+                fast.add(s);
+            }
+            while (hub.subscribers() < spectatorCount) Thread.sleep(10);
+            System.out.printf("%d spectators connected (%d never read)%n", spectatorCount, slow.size());
+
+            Thread publisher = new Thread(() -> publish(hub, moves, rate), "publisher");
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long hubThread = hubThreadId();
+            long cpuBefore = threads.getThreadCpuTime(hubThread);
+            long start = System.nanoTime();
+            publisher.start();
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long deadline = start + (moves * 1_000_000_000L) / rate + 10_000_000_000L;
+            while (System.nanoTime() < deadline && !allDone(fast, moves)) {
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    read((Spectator) key.attachment(), buffer);
+                }
+            }
+            publisher.join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long cpu = threads.getThreadCpuTime(hubThread) - cpuBefore;
+
+            long complete = fast.stream().filter(s -> s.lastSeq == moves).count();
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            System.out.printf("%d moves at %d/s in %.1f s: %,d lines delivered, %d of %d reading spectators complete%n",
+                    moves, rate, seconds, totalReceived, complete, fast.size());
+            System.out.printf("latency us: p50 %d  p99 %d  p99.9 %d  max %d%n", percentile(sorted, 0.5) / 1000,
+                    percentile(sorted, 0.99) / 1000, percentile(sorted, 0.999) / 1000,
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000);
+            System.out.printf("hub CPU %.0f ms (%.2f us per delivered line), %d resyncs, %d ordering errors%n",
+                    cpu / 1e6, cpu / 1e3 / Math.max(1, totalReceived), hub.resyncs(), orderErrors);
+            for (Spectator s : fast) s.channel.close();
+            for (SocketChannel c : slow) c.close();
+        }
+    }
+
+    // A random legal game, restarted from the initial position when it ends
+    private void publish(BroadcastHub hub, int moves, int rate) {
+        Random random = new Random(1);
+        Position pos = Position.fromFen(Position.START_FEN);
+        int[] legal = new int[Position.MAX_MOVES];
+        long start = System.nanoTime();
+        for (int seq = 1; seq <= moves; seq++) {
+            long due = start + seq * 1_000_000_000L / rate;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            int n = pos.generateLegalMoves(legal);
+            if (n == 0 || pos.halfmoveClock() >= 100) {
+                pos = Position.fromFen(Position.START_FEN);
+                publishNanos.set(seq, System.nanoTime());
+                hub.publishPosition(pos, -1, -1);
+                continue;
+            }
+            int move = legal[random.nextInt(n)];
+            pos.makeMove(move);
+            publishNanos.set(seq, System.nanoTime());
+            hub.publishMove(move, pos, -1, -1);
+        }
+    }
+
+    private void read(Spectator s, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int n = s.channel.read(buffer);
+        if (n <= 0) return;
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            char c = (char) buffer.get(i);
+            if (c != '\n') {
+                s.partial.append(c);
+                continue;
+            }
+            String[] fields = s.partial.toString().split(" ");
+            s.partial.setLength(0);
+            long seq = Long.parseLong(fields[1]);
+            if (fields[0].equals("move") && seq != s.lastSeq + 1) orderErrors++;
+            if (seq > 0) {
+                long sent = publishNanos.get((int) seq);
+                if (sent > 0 && latencyCount < latencies.length) latencies[latencyCount++] = now - sent;
+            }
+            s.lastSeq = seq;
+            s.received++;
+            totalReceived++;
+        }
+    }
+
+    private static boolean allDone(List<Spectator> spectators, int moves) {
+        for (Spectator s : spectators) {
+            if (s.lastSeq < moves) return false;
+        }
+        return true;
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))];
+    }
+
+    private static long hubThreadId() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("broadcast-hub")) return t.getId();
+        }
+        throw new IllegalStateException("Hub thread not found");
+    }
+}
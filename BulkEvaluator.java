@@ -0,0 +1,153 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Scores many positions without a GUI. Each worker thread owns a Search and its hash table, cleared
+// before every position so a result does not depend on which thread searched what before it; submit()
+// blocks once maxInFlight positions are queued or running, so a fast reader cannot outrun the
+// workers. evaluate() keeps results in input order by writing them from a window of futures.
+public class BulkEvaluator implements AutoCloseable {
+    public static class Scored {
+        public final String fen;
+        public final int bestMove;
+        public final int whiteScore; // Centipawns from White's point of view
+        public final int depth;
+        public final long nodes;
+
+        Scored(String fen, int bestMove, int whiteScore, int depth, long nodes) {
+            this.fen = fen;
+            this.bestMove = bestMove;
+            this.whiteScore = whiteScore;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+
+        // Tab-separated: FEN, score (or #N for mate in N moves), best move, depth, nodes
+        public String toLine() {
+            String score = Search.isMate(whiteScore) ? Search.formatMate(whiteScore) : Integer.toString(whiteScore);
+            return fen + '\t' + score + '\t' + Move.toUci(bestMove) + '\t' + depth + '\t' + nodes;
+        }
+    }
+
+    private final Search.Limits limits;
+    private final ExecutorService workers;
+    private final ThreadLocal<Worker> threadState;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    private static final class Worker {
+        final TranspositionTable tt;
+        final Search search;
+
+        Worker(int hashMb) {
+            tt = new TranspositionTable(hashMb);
+            search = new Search(tt, null);
+        }
+    }
+
+    public BulkEvaluator(int threads, Search.Limits limits, int hashMbPerThread) {
+        this.limits = limits;
+        this.maxInFlight = threads * 4;
+        this.inFlight = new Semaphore(maxInFlight);
+        AtomicInteger ids = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-eval-" + ids.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.threadState = ThreadLocal.withInitial(() -> new Worker(hashMbPerThread));
+    }
+
+    // Blocks while the pool already holds maxInFlight positions
+    public CompletableFuture<Scored> submit(String fen) throws InterruptedException {
+        inFlight.acquire();
+        CompletableFuture<Scored> result = CompletableFuture.supplyAsync(() -> score(fen), workers);
+        result.whenComplete((r, e) -> inFlight.release());
+        return result;
+    }
+
+    private Scored score(String fen) {
+        Position pos = Position.fromFen(fen);
+        Worker w = threadState.get();
+        w.tt.clear();
+        Search.Result r = w.search.search(pos, limits);
+        int whiteScore = pos.sideToMove() == Position.WHITE ? r.score : -r.score;
+        return new Scored(fen, r.bestMove, whiteScore, r.depth, r.nodes);
+    }
+
+    // Reads one FEN per line and writes one result line per input line, in order; positions that do
+    // not parse get "error: ..." in place of the score. Returns the number of positions.
+    public long evaluate(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        ArrayDeque<CompletableFuture<Scored>> window = new ArrayDeque<>();
+        ArrayDeque<String> fens = new ArrayDeque<>();
+        long count = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (window.size() == maxInFlight) writeHead(window, fens, out);
+            window.add(submit(line));
+            fens.add(line);
+            count++;
+            while (!window.isEmpty() && window.peek().isDone()) writeHead(window, fens, out);
+        }
+        while (!window.isEmpty()) writeHead(window, fens, out);
+        out.flush();
+        return count;
+    }
+
+    private static void writeHead(ArrayDeque<CompletableFuture<Scored>> window, ArrayDeque<String> fens, Writer out)
+            throws IOException {
+        String fen = fens.poll();
+        try {
+            out.write(window.poll().join().toLine());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            out.write(fen + "\terror: " + cause.getMessage());
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    // java BulkEvaluator <file|-> [depth=6] [threads=all cores] [nodes=unlimited]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: java BulkEvaluator <file|-> [depth] [threads] [nodes]");
+            System.exit(2);
+        }
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long nodes = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        BufferedReader in = args[0].equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        long start = System.nanoTime();
+        long count;
+        try (BulkEvaluator evaluator = new BulkEvaluator(threads, new Search.Limits(depth, 0, nodes), 16)) {
+            count = evaluator.evaluate(in, out);
+        } finally {
+            in.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d positions in %.1f s (%.0f/s) on %d threads%n", count, seconds, count / seconds, threads);
+    }
+}
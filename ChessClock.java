@@ -0,0 +1,80 @@
+// Two-sided game clock. After each move the mover gets the increment; with a delay, the first
+// delayMillis of every turn are not charged (US delay). A side whose time runs out is flagged and the
+// clock stops.
+public class ChessClock {
+    private final long[] remaining = new long[2];
+    private final long incrementMillis;
+    private final long delayMillis;
+    private int running = -1;
+    private long turnStart;
+    private int flagged = -1;
+
+    public ChessClock(long initialMillis, long incrementMillis, long delayMillis) {
+        remaining[Position.WHITE] = remaining[Position.BLACK] = initialMillis;
+        this.incrementMillis = incrementMillis;
+        this.delayMillis = delayMillis;
+    }
+
+    public long incrementMillis() {
+        return incrementMillis;
+    }
+
+    public long delayMillis() {
+        return delayMillis;
+    }
+
+    public synchronized void start(int color) {
+        if (flagged >= 0) return;
+        running = color;
+        turnStart = System.nanoTime();
+    }
+
+    // The side to move finished its move: charge it, add its increment and start the opponent
+    public synchronized void press() {
+        if (running < 0 || checkFlag()) return;
+        int mover = running;
+        remaining[mover] -= charged(System.nanoTime());
+        remaining[mover] += incrementMillis;
+        start(mover ^ 1);
+    }
+
+    public synchronized void stop() {
+        if (running >= 0) remaining[running] -= charged(System.nanoTime());
+        running = -1;
+    }
+
+    public synchronized long remainingMillis(int color) {
+        return color == running ? remaining[color] - charged(System.nanoTime()) : remaining[color];
+    }
+
+    public synchronized int runningSide() {
+        return running;
+    }
+
+    // Flags the running side if its time is up; returns whether either side has flagged
+    public synchronized boolean checkFlag() {
+        if (flagged < 0 && running >= 0 && remainingMillis(running) <= 0) {
+            flagged = running;
+            remaining[running] = 0;
+            running = -1;
+        }
+        return flagged >= 0;
+    }
+
+    public synchronized int flaggedSide() {
+        return flagged;
+    }
+
+    private long charged(long now) {
+        long elapsed = (now - turnStart) / 1_000_000;
+        return Math.max(0, elapsed - delayMillis);
+    }
+
+    // m:ss, with tenths under ten seconds
+    public static String format(long millis) {
+        if (millis <= 0) return "0:00";
+        if (millis < 10_000) return String.format("0:%02d.%d", millis / 1000, millis / 100 % 10);
+        long seconds = (millis + 999) / 1000;
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -2,20 +2,69 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ChessGame extends JFrame {
     private static final int SIZE = 8;
-    private final JButton[][] squares = new JButton[SIZE][SIZE];
+    private static final String[] TIME_CONTROLS = {"No clock", "1 min", "3 min + 2 s", "5 min, 5 s delay", "10 min + 5 s", "15 min + 10 s"};
+    private static final long[][] TIME_CONTROL_MS = { // initial, increment, delay
+            {0, 0, 0}, {60_000, 0, 0}, {180_000, 2_000, 0}, {300_000, 0, 5_000}, {600_000, 5_000, 0}, {900_000, 10_000, 0}};
+
+    // Searches run off the EDT so the board keeps repainting while the engine thinks
+    private static final ExecutorService ENGINE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chess-engine");
+        t.setDaemon(true);
+        return t;
+    });
     private String[][] board = new String[SIZE][SIZE];
+    private BoardPanel boardPanel;
+    private AnalysisPanel analysisPanel;
+    private ExplorerPanel explorerPanel;
+    private ReportPanel reportPanel;
+    private JTabbedPane sidePanels;
+    private final Analyzer analyzer = new Analyzer();
+    private final BroadcastHub broadcast; // null unless -Dchess.broadcast.port is set
+    private final SimulEngine simul; // Shared engine when this is one board of a simul, else null
+    private int simulBoards = 0; // Boards requested at start-up for a simul
+    private String boardName = null;
+    private long lastReplyMillis = -1, maxReplyMillis = -1;
 
     // Game State
     private Point selectedPiece = null;
     private boolean whiteTurn = true;
     private boolean vsComputer = false;
-    private String difficulty = "Easy"; // Easy, Medium
+    private Difficulty difficulty = Difficulty.EASY;
+    private final String gameId = "game-" + Long.toHexString(System.nanoTime());
+    private Search search = null; // Simul boards only; the shared engine sets its own limits
+    private LevelEngine engine = null;
+    private final CpuBudget cpuBudget = CpuBudget.fromProperties();
+    private boolean computerThinking = false;
+    private boolean gameOver = false; // Set before the Game Over dialog, which pumps events while it is open
+    private long dialogNanos = 0; // Time modal dialogs were open during the current move, kept out of its timing
+    private ChessClock clock = null; // null when playing without a clock
+    private int fullmoveNumber = 1;
+    private int halfmoveClock = 0; // Plies since the last capture or pawn move
+    private List<Puzzle> puzzles = null; // Puzzle mode when set
+    private int puzzleIndex = 0;
+    private int puzzleStep = 0; // Next move of the current puzzle's solution
+    private GameHistory history;
+    private int reviewPly = -1; // Ply shown by the timeline, or -1 while the board shows the game
+    private JSlider timeline;
+    private JLabel timelineLabel;
+    private JButton undoButton;
+    private String result = "*"; // PGN result once the game is over
 
     // State for special moves
     private boolean whiteKingMoved = false;
@@ -26,44 +75,158 @@ public class ChessGame extends JFrame {
     private boolean blackRookHMoved = false;
     private Point enPassantTarget = null; // The square a pawn can move to for en passant
 
-    private final Color lightColor = new Color(240, 217, 181);
-    private final Color darkColor = new Color(181, 136, 99);
-    private final Color selectedColor = new Color(137, 196, 244);
-    private final Color validMoveColor = new Color(100, 150, 100, 150); // Semi-transparent green
+    // Rules snapshot of the current position and its legal moves, indexed by origin square
+    // (row * 8 + col) as a bitmask of target squares. Built once per position and dropped
+    // whenever a move is made.
+    private Position position = null;
+    private long[] legalMoveTable = null;
+    private boolean sideToMoveInCheck = false;
 
     public ChessGame() {
-        if (!setupGameMode()) {
+        boolean start = setupGameMode();
+        simul = null;
+        broadcast = start && simulBoards == 0 ? startBroadcast() : null;
+        if (!start) {
             System.exit(0);
         }
+        if (simulBoards > 0) {
+            SimulExhibition.open(simulBoards);
+            dispose();
+            return;
+        }
 
         setTitle("Java Chess Game");
-        setSize(800, 800);
-        setLayout(new GridLayout(SIZE, SIZE));
+        setSize(1100, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        buildUi();
+
+        setVisible(true);
+        if (clock != null) clock.start(Position.WHITE);
+    }
+
+    // One board of a simul against the shared engine; the caller shows the content pane
+    ChessGame(SimulEngine simul, String boardName) {
+        this.simul = simul;
+        this.broadcast = null;
+        this.boardName = boardName;
+        vsComputer = true;
+        difficulty = Difficulty.HARD;
+        buildUi();
+    }
 
+    private void buildUi() {
+        setLayout(new BorderLayout());
         initBoard();
-        drawBoard();
+        history = new GameHistory(currentPosition());
+        boardPanel = new BoardPanel(board, this::onSquareClick);
+        reportPanel = new ReportPanel(this::gameRecord, ply -> timeline.setValue(ply));
+        add(boardPanel, BorderLayout.CENTER);
+        add(buildTimeline(), BorderLayout.SOUTH);
+        analysisPanel = new AnalysisPanel(analyzer, this::shownPosition, this::showHint);
+        explorerPanel = new ExplorerPanel(this::showHint);
+        sidePanels = new JTabbedPane();
+        sidePanels.addTab("Analysis", analysisPanel);
+        sidePanels.addTab("Openings", explorerPanel);
+        sidePanels.addTab("Report", reportPanel);
+        add(sidePanels, BorderLayout.EAST);
+        explorerPanel.positionChanged(currentPosition());
+        if (clock != null) add(new ClockPanel(clock, this::onFlag), BorderLayout.NORTH);
+        if (puzzles != null) startPuzzle();
+        else if (broadcast != null) broadcast.publishPosition(currentPosition(), clockMillis(Position.WHITE), clockMillis(Position.BLACK));
         updateTitle();
+    }
 
-        setVisible(true);
+    private JPanel buildTimeline() {
+        timeline = new JSlider(0, 0, 0);
+        timeline.addChangeListener(e -> seek(timeline.getValue()));
+        timelineLabel = new JLabel();
+        JButton back = new JButton("<");
+        back.addActionListener(e -> timeline.setValue(timeline.getValue() - 1));
+        JButton forward = new JButton(">");
+        forward.addActionListener(e -> timeline.setValue(timeline.getValue() + 1));
+        undoButton = new JButton("Undo");
+        undoButton.addActionListener(e -> undo());
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        buttons.add(back);
+        buttons.add(forward);
+        buttons.add(timelineLabel);
+        JPanel panel = new JPanel(new BorderLayout(6, 0));
+        panel.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        panel.add(buttons, BorderLayout.WEST);
+        panel.add(timeline, BorderLayout.CENTER);
+        panel.add(undoButton, BorderLayout.EAST);
+        updateTimeline();
+        return panel;
+    }
+
+    private static BroadcastHub startBroadcast() {
+        Integer port = Integer.getInteger("chess.broadcast.port");
+        if (port == null) return null;
+        try {
+            return BroadcastHub.start(port);
+        } catch (IOException e) {
+            System.err.println("Broadcast not started: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private long clockMillis(int color) {
+        return clock == null ? -1 : clock.remainingMillis(color);
     }
 
     private boolean setupGameMode() {
-        String[] modes = {"Player vs Player", "Player vs Computer"};
+        String[] modes = {"Player vs Player", "Player vs Computer", "Puzzles", "Simultaneous exhibition"};
         String mode = (String) JOptionPane.showInputDialog(
                 this, "Choose game mode:", "Game Mode",
                 JOptionPane.QUESTION_MESSAGE, null, modes, modes[0]);
 
         if (mode == null) return false;
 
+        if (mode.equals("Simultaneous exhibition")) {
+            String boards = JOptionPane.showInputDialog(this, "Number of boards (1-50):", "10");
+            if (boards == null) return false;
+            try {
+                simulBoards = Math.max(1, Math.min(50, Integer.parseInt(boards.trim())));
+            } catch (NumberFormatException e) {
+                simulBoards = 10;
+            }
+            return true;
+        }
+
+        if (mode.equals("Puzzles")) {
+            Path path = Paths.get(System.getProperty("chess.puzzles", "puzzles"));
+            try {
+                puzzles = Files.exists(path) ? Puzzle.load(path) : new ArrayList<>();
+            } catch (IOException e) {
+                puzzles = new ArrayList<>();
+            }
+            if (puzzles.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No puzzles found in " + path.toAbsolutePath() + ".",
+                        "Puzzles", JOptionPane.WARNING_MESSAGE);
+                puzzles = null;
+                return setupGameMode();
+            }
+            puzzleIndex = new Random().nextInt(puzzles.size());
+            return true;
+        }
+
         if (mode.equals("Player vs Computer")) {
             vsComputer = true;
-            String[] levels = {"Easy", "Medium"};
-            difficulty = (String) JOptionPane.showInputDialog(
+            String[] levels = Difficulty.names();
+            String level = (String) JOptionPane.showInputDialog(
                     this, "Choose difficulty:", "Difficulty",
                     JOptionPane.QUESTION_MESSAGE, null, levels, levels[0]);
-            if (difficulty == null) return false;
+            if (level == null) return false;
+            difficulty = Difficulty.named(level);
         }
+
+        String control = (String) JOptionPane.showInputDialog(
+                this, "Choose time control:", "Clock",
+                JOptionPane.QUESTION_MESSAGE, null, TIME_CONTROLS, TIME_CONTROLS[0]);
+        if (control == null) return false;
+        long[] ms = TIME_CONTROL_MS[java.util.Arrays.asList(TIME_CONTROLS).indexOf(control)];
+        if (ms[0] > 0) clock = new ChessClock(ms[0], ms[1], ms[2]);
         return true;
     }
 
@@ -82,38 +245,8 @@ public class ChessGame extends JFrame {
         }
     }
 
-    private void drawBoard() {
-        Font font = new Font("SansSerif", Font.PLAIN, 48);
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                JButton btn = new JButton();
-                btn.setFont(font);
-                btn.setFocusPainted(false);
-                btn.setText(getPieceUnicode(board[r][c]));
-
-                int row = r, col = c;
-                btn.addActionListener(e -> onSquareClick(row, col));
-                squares[r][c] = btn;
-                add(btn);
-            }
-        }
-        refreshBoardColors();
-    }
-
-    private String getPieceUnicode(String piece) {
-        if (piece.isEmpty()) return "";
-        switch (piece) {
-            case "wp": return "♙"; case "bp": return "♟";
-            case "wr": return "♖"; case "br": return "♜";
-            case "wn": return "♘"; case "bn": return "♞";
-            case "wb": return "♗"; case "bb": return "♝";
-            case "wq": return "♕"; case "bq": return "♛";
-            case "wk": return "♔"; case "bk": return "♚";
-            default: return "?";
-        }
-    }
-
     private void onSquareClick(int row, int col) {
+        if (computerThinking || (vsComputer && !whiteTurn) || reviewPly >= 0) return;
         if (selectedPiece == null) {
             if (!board[row][col].isEmpty() && isCurrentTurn(board[row][col].charAt(0))) {
                 selectedPiece = new Point(row, col);
@@ -130,11 +263,32 @@ public class ChessGame extends JFrame {
                 return;
             }
 
-            if (isValidMove(r1, c1, row, col)) {
-                movePiece(r1, c1, row, col);
+            EngineEvents.HumanMoveEvent moveEvent = new EngineEvents.HumanMoveEvent();
+            moveEvent.begin();
+            dialogNanos = 0;
+            long validationStart = System.nanoTime();
+            boolean valid = isValidMove(r1, c1, row, col);
+            long validationNanos = System.nanoTime() - validationStart;
+
+            if (valid && puzzles != null && !acceptsPuzzleMove(r1 * SIZE + c1, row * SIZE + col)) {
+                selectedPiece = null;
+                refreshBoardColors();
+                JOptionPane.showMessageDialog(this, "That is not the solution. Try again.", "Puzzle",
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            if (valid) {
+                movePiece(r1, c1, row, col, puzzles != null ? promotionChar(puzzles.get(puzzleIndex).solution[puzzleStep]) : '\0');
                 selectedPiece = null;
                 refreshBoardColors();
                 switchTurn();
+                if (moveEvent.shouldCommit()) {
+                    moveEvent.move = Move.toUci(Move.of(r1 * SIZE + c1, row * SIZE + col));
+                    moveEvent.validationNanos = validationNanos;
+                    moveEvent.updateNanos = System.nanoTime() - validationStart - validationNanos - dialogNanos;
+                    moveEvent.dialogNanos = dialogNanos;
+                    moveEvent.commit();
+                }
             } else {
                 selectedPiece = null;
                 refreshBoardColors();
@@ -147,35 +301,75 @@ public class ChessGame extends JFrame {
     }
 
     private void switchTurn() {
+        pressClock();
         whiteTurn = !whiteTurn;
         updateTitle();
+        analysisPanel.positionChanged(!(vsComputer && !whiteTurn));
+        explorerPanel.positionChanged(currentPosition());
+        if (puzzles != null) {
+            puzzleMovePlayed();
+            return;
+        }
         checkGameState();
 
-        if (vsComputer && !whiteTurn) {
-            Timer timer = new Timer(500, e -> {
-                makeComputerMove();
-                whiteTurn = !whiteTurn;
-                updateTitle();
-                checkGameState();
-            });
-            timer.setRepeats(false);
-            timer.start();
-        }
+        if (vsComputer && !whiteTurn && !gameOver) SwingUtilities.invokeLater(this::startEngineSearch);
+    }
+
+    private void finishComputerTurn() {
+        pressClock();
+        whiteTurn = !whiteTurn;
+        updateTitle();
+        analysisPanel.positionChanged(true);
+        explorerPanel.positionChanged(currentPosition());
+        checkGameState();
     }
     
+    private void pressClock() {
+        if (!whiteTurn) fullmoveNumber++;
+        if (clock != null) clock.press();
+    }
+
+    private void onFlag() {
+        if (gameOver) return;
+        if (search != null) search.stop();
+        if (engine != null) engine.stop();
+        boolean whiteFlagged = clock.flaggedSide() == Position.WHITE;
+        endGame(whiteFlagged ? "Black wins on time!" : "White wins on time!", whiteFlagged ? "0-1" : "1-0");
+    }
+
     private void updateTitle() {
         String turn = whiteTurn ? "White's Turn" : "Black's Turn";
-        if (isKingInCheck(whiteTurn)) {
+        currentPosition();
+        if (sideToMoveInCheck) {
             turn += " (Check!)";
         }
+        if (puzzles != null) {
+            Puzzle p = puzzles.get(puzzleIndex);
+            turn = "Puzzle " + (puzzleIndex + 1) + " of " + puzzles.size() + " (" + String.join(", ", p.themes) + ") - " + turn;
+        }
+        if (simul != null) {
+            if (lastReplyMillis >= 0) turn += String.format(" - reply %.1f s (max %.1f s)", lastReplyMillis / 1000.0, maxReplyMillis / 1000.0);
+            setTitle(boardName + " - " + turn);
+            return;
+        }
         setTitle("Java Chess Game - " + turn);
     }
 
     private void movePiece(int r1, int c1, int r2, int c2) {
+        movePiece(r1, c1, r2, c2, '\0');
+    }
+
+    // A promotion piece of '\0' asks the player to choose
+    private void movePiece(int r1, int c1, int r2, int c2, char promotion) {
+        showLive();
         String piece = board[r1][c1];
         char pieceType = piece.charAt(1);
+        Position before = currentPosition().copy();
 
+        position = null;
+        legalMoveTable = null;
         enPassantTarget = null;
+        halfmoveClock = pieceType == 'p' || !board[r2][c2].isEmpty() ? 0 : halfmoveClock + 1;
 
         if (pieceType == 'p' && Math.abs(r1 - r2) == 2) {
             enPassantTarget = new Point((r1 + r2) / 2, c1);
@@ -184,20 +378,20 @@ public class ChessGame extends JFrame {
         if (pieceType == 'p' && c1 != c2 && board[r2][c2].isEmpty()) {
             int capturedPawnRow = whiteTurn ? r2 + 1 : r2 - 1;
             board[capturedPawnRow][c2] = "";
-            squares[capturedPawnRow][c2].setText("");
+            boardPanel.repaintSquare(capturedPawnRow, c2);
         }
 
         if (pieceType == 'k' && Math.abs(c1 - c2) == 2) {
             if (c2 > c1) { // Kingside
                 board[r1][c1 + 1] = board[r1][c2 + 1];
                 board[r1][c2 + 1] = "";
-                squares[r1][c1 + 1].setText(getPieceUnicode(board[r1][c1 + 1]));
-                squares[r1][c2 + 1].setText("");
+                boardPanel.repaintSquare(r1, c1 + 1);
+                boardPanel.repaintSquare(r1, c2 + 1);
             } else { // Queenside
                 board[r1][c1 - 1] = board[r1][c2 - 2];
                 board[r1][c2 - 2] = "";
-                squares[r1][c1 - 1].setText(getPieceUnicode(board[r1][c1 - 1]));
-                squares[r1][c2 - 2].setText("");
+                boardPanel.repaintSquare(r1, c1 - 1);
+                boardPanel.repaintSquare(r1, c2 - 2);
             }
         }
 
@@ -214,19 +408,42 @@ public class ChessGame extends JFrame {
 
         board[r2][c2] = piece;
         board[r1][c1] = "";
-        squares[r2][c2].setText(getPieceUnicode(piece));
-        squares[r1][c1].setText("");
+        boardPanel.animateMove(r1, c1, r2, c2);
         
         if (pieceType == 'p' && (r2 == 0 || r2 == 7)) {
-            promotePawn(r2, c2);
+            if (promotion == '\0') {
+                promotePawn(r2, c2);
+            } else {
+                board[r2][c2] = (whiteTurn ? "w" : "b") + promotion;
+                boardPanel.repaintSquare(r2, c2);
+            }
+        }
+        recordMove(before, r1 * SIZE + c1, r2 * SIZE + c2, board[r2][c2].charAt(1));
+    }
+
+    // Adds the move just made on the board to the history and the broadcast, given the position before it
+    private void recordMove(Position before, int from, int to, char landed) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = before.generateLegalMoves(moves);
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            if (Move.from(m) != from || Move.to(m) != to) continue;
+            if (Move.promotion(m) != 0 && " pnbrqk".charAt(Move.promotion(m)) != landed) continue;
+            before.makeMove(m);
+            history.add(m, before);
+            updateTimeline();
+            if (broadcast != null) broadcast.publishMove(m, before, clockMillis(Position.WHITE), clockMillis(Position.BLACK));
+            return;
         }
     }
 
     private void promotePawn(int r, int c) {
         String[] options = {"Queen", "Rook", "Bishop", "Knight"};
+        long shown = System.nanoTime();
         String choice = (String) JOptionPane.showInputDialog(
                 this, "Promote pawn to:", "Pawn Promotion",
                 JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        dialogNanos += System.nanoTime() - shown;
 
         if (choice == null) choice = "Queen";
         
@@ -239,358 +456,328 @@ public class ChessGame extends JFrame {
         }
         String newPiece = (whiteTurn ? "w" : "b") + pieceChar;
         board[r][c] = newPiece;
-        squares[r][c].setText(getPieceUnicode(newPiece));
-    }
-
-    // --- Move Validation ---
-
-    private boolean isValidMove(int r1, int c1, int r2, int c2) {
-        List<Point> validMoves = generateValidMovesForPiece(r1, c1);
-        return validMoves.contains(new Point(r2, c2));
+        boardPanel.repaintSquare(r, c);
     }
 
-    private List<Point> generateValidMovesForPiece(int r, int c) {
-        List<Point> moves = new ArrayList<>();
-        String piece = board[r][c];
-        if (piece.isEmpty()) return moves;
-
-        char pieceColor = piece.charAt(0);
-        char pieceType = piece.charAt(1);
-
-        switch (pieceType) {
-            case 'p': moves.addAll(getPawnMoves(r, c, pieceColor)); break;
-            case 'r': moves.addAll(getRookMoves(r, c)); break;
-            case 'n': moves.addAll(getKnightMoves(r, c)); break;
-            case 'b': moves.addAll(getBishopMoves(r, c)); break;
-            case 'q': moves.addAll(getQueenMoves(r, c)); break;
-            case 'k': moves.addAll(getKingMoves(r, c, pieceColor)); break;
-        }
+    // --- Puzzles ---
 
-        List<Point> legalMoves = new ArrayList<>();
-        for (Point move : moves) {
-            if (isMoveLegal(r, c, move.x, move.y)) {
-                legalMoves.add(move);
+    private void startPuzzle() {
+        setBoard(Position.fromFen(puzzles.get(puzzleIndex).fen));
+        history = new GameHistory(currentPosition());
+        updateTimeline();
+        puzzleStep = 0;
+        updateTitle();
+        analysisPanel.positionChanged(true);
+        explorerPanel.positionChanged(currentPosition());
+    }
+
+    // The solution move, or any other move that mates at once
+    private boolean acceptsPuzzleMove(int from, int to) {
+        Puzzle p = puzzles.get(puzzleIndex);
+        int expected = p.solution[puzzleStep];
+        if (Move.from(expected) == from && Move.to(expected) == to) return true;
+        Position pos = currentPosition().copy();
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(moves);
+        for (int i = 0; i < n; i++) {
+            if (Move.from(moves[i]) != from || Move.to(moves[i]) != to) continue;
+            pos.makeMove(moves[i]);
+            boolean mate = pos.inCheck() && !pos.hasAnyLegalMove();
+            pos.unmakeMove(moves[i]);
+            if (mate) {
+                puzzleStep = p.solution.length - 1;
+                return true;
             }
         }
-        return legalMoves;
-    }
-    
-    private boolean isMoveLegal(int r1, int c1, int r2, int c2) {
-        String piece = board[r1][c1];
-        String capturedPiece = board[r2][c2];
-
-        board[r2][c2] = piece;
-        board[r1][c1] = "";
-
-        boolean kingInCheck = isKingInCheck(whiteTurn);
-
-        board[r1][c1] = piece;
-        board[r2][c2] = capturedPiece;
-
-        return !kingInCheck;
+        return false;
     }
 
-    private List<Point> getPawnMoves(int r, int c, char color) {
-        List<Point> moves = new ArrayList<>();
-        int dir = (color == 'w') ? -1 : 1;
-        int startRow = (color == 'w') ? 6 : 1;
-
-        if (r + dir >= 0 && r + dir < SIZE && board[r + dir][c].isEmpty()) {
-            moves.add(new Point(r + dir, c));
-            if (r == startRow && board[r + 2 * dir][c].isEmpty()) {
-                moves.add(new Point(r + 2 * dir, c));
+    // After a correct move: play the forced reply, or move on to the next puzzle when solved
+    private void puzzleMovePlayed() {
+        Puzzle p = puzzles.get(puzzleIndex);
+        if (++puzzleStep >= p.solution.length) {
+            long shown = System.nanoTime();
+            JOptionPane.showMessageDialog(this, "Puzzle solved!", "Puzzle", JOptionPane.INFORMATION_MESSAGE);
+            dialogNanos += System.nanoTime() - shown;
+            puzzleIndex = (puzzleIndex + 1) % puzzles.size();
+            startPuzzle();
+            return;
+        }
+        int reply = p.solution[puzzleStep++];
+        computerThinking = true;
+        Timer timer = new Timer(500, e -> {
+            computerThinking = false;
+            int from = Move.from(reply), to = Move.to(reply);
+            movePiece(from / SIZE, from % SIZE, to / SIZE, to % SIZE, promotionChar(reply));
+            finishComputerTurn();
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    private static char promotionChar(int move) {
+        return Move.promotion(move) == 0 ? 'q' : " pnbrqk".charAt(Move.promotion(move));
+    }
+
+    // Replaces the game state with the given position, repainting only the squares that change
+    private void setBoard(Position pos) {
+        showLive();
+        String[][] target = boardOf(pos);
+        for (int r = 0; r < SIZE; r++) {
+            for (int c = 0; c < SIZE; c++) {
+                if (board[r][c].equals(target[r][c])) continue;
+                board[r][c] = target[r][c];
+                boardPanel.repaintSquare(r, c);
             }
         }
-        for (int dc = -1; dc <= 1; dc += 2) {
-            if (c + dc >= 0 && c + dc < SIZE) {
-                if (!board[r + dir][c + dc].isEmpty() && board[r + dir][c + dc].charAt(0) != color) {
-                    moves.add(new Point(r + dir, c + dc));
-                }
-                if (enPassantTarget != null && enPassantTarget.x == r + dir && enPassantTarget.y == c + dc) {
-                    moves.add(new Point(r + dir, c + dc));
-                }
-            }
+        int castling = pos.castlingRights();
+        whiteRookHMoved = (castling & Position.WHITE_OO) == 0;
+        whiteRookAMoved = (castling & Position.WHITE_OOO) == 0;
+        blackRookHMoved = (castling & Position.BLACK_OO) == 0;
+        blackRookAMoved = (castling & Position.BLACK_OOO) == 0;
+        whiteKingMoved = whiteRookHMoved && whiteRookAMoved;
+        blackKingMoved = blackRookHMoved && blackRookAMoved;
+        int ep = pos.enPassantSquare();
+        enPassantTarget = ep < 0 ? null : new Point(ep / SIZE, ep % SIZE);
+        whiteTurn = pos.sideToMove() == Position.WHITE;
+        halfmoveClock = pos.halfmoveClock();
+        fullmoveNumber = pos.fullmoveNumber();
+        position = null;
+        legalMoveTable = null;
+        selectedPiece = null;
+        boardPanel.clearHighlights();
+        boardPanel.setEnabled(true);
+        gameOver = false;
+        if (broadcast != null) broadcast.publishPosition(currentPosition(), clockMillis(Position.WHITE), clockMillis(Position.BLACK));
+    }
+
+    private static String[][] boardOf(Position pos) {
+        String[][] squares = new String[SIZE][SIZE];
+        for (int sq = 0; sq < SIZE * SIZE; sq++) {
+            int piece = pos.pieceAt(sq);
+            squares[sq / SIZE][sq % SIZE] = piece == 0 ? ""
+                    : (Position.colorOf(piece) == Position.WHITE ? "w" : "b") + " pnbrqk".charAt(Position.typeOf(piece));
+        }
+        return squares;
+    }
+
+    // --- History ---
+
+    // Shows the position after ply moves; the last ply is the game itself and accepts moves again
+    private void seek(int ply) {
+        if (history == null) return;
+        int wasShown = reviewPly;
+        if (ply >= history.size()) {
+            showLive();
+        } else {
+            reviewPly = ply;
+            selectedPiece = null;
+            boardPanel.clearHighlights();
+            boardPanel.showBoard(boardOf(history.positionAt(ply)));
+        }
+        updateTimelineLabel();
+        if (reviewPly == wasShown) return; // Also the case while a move updates the timeline
+        // The side panels follow the board; analysis waits while the engine thinks, but not after the game
+        if (gameOver && reviewPly < 0) {
+            analysisPanel.setGameOver();
+        } else {
+            analysisPanel.positionChanged(gameOver || !(vsComputer && !whiteTurn));
         }
-        return moves;
+        explorerPanel.positionChanged(shownPosition());
     }
 
-    private List<Point> getRookMoves(int r, int c) {
-        List<Point> moves = new ArrayList<>();
-        int[] dr = {-1, 1, 0, 0};
-        int[] dc = {0, 0, -1, 1};
-        addSlidingMoves(moves, r, c, dr, dc);
-        return moves;
+    // The position on the board: a copy of the reviewed one while the timeline is moved back, otherwise the game's
+    private Position shownPosition() {
+        return reviewPly >= 0 ? history.positionAt(reviewPly).copy() : currentPosition();
     }
 
-    private List<Point> getBishopMoves(int r, int c) {
-        List<Point> moves = new ArrayList<>();
-        int[] dr = {-1, -1, 1, 1};
-        int[] dc = {-1, 1, -1, 1};
-        addSlidingMoves(moves, r, c, dr, dc);
-        return moves;
+    private void showLive() {
+        if (reviewPly < 0) return;
+        reviewPly = -1;
+        boardPanel.clearHighlights(); // A hint shown for a reviewed position
+        boardPanel.showBoard(board);
+        if (timeline.getValue() != history.size()) timeline.setValue(history.size());
     }
 
-    private List<Point> getQueenMoves(int r, int c) {
-        List<Point> moves = getRookMoves(r, c);
-        moves.addAll(getBishopMoves(r, c));
-        return moves;
+    private void updateTimeline() {
+        if (timeline == null) return;
+        // Value and range in one change, so the listener never sees a live board as a review
+        int value = reviewPly < 0 ? history.size() : Math.min(reviewPly, history.size());
+        timeline.getModel().setRangeProperties(value, 0, 0, history.size(), false);
+        updateTimelineLabel();
     }
 
-    private List<Point> getKnightMoves(int r, int c) {
-        List<Point> moves = new ArrayList<>();
-        int[] dr = {-2, -2, -1, -1, 1, 1, 2, 2};
-        int[] dc = {-1, 1, -2, 2, -2, 2, -1, 1};
-        char color = board[r][c].charAt(0);
+    private void updateTimelineLabel() {
+        int ply = reviewPly < 0 ? history.size() : reviewPly;
+        timelineLabel.setText("Ply " + ply + " of " + history.size() + (reviewPly < 0 ? "" : " (review)"));
+        reportPanel.showPly(ply);
+        undoButton.setEnabled(puzzles == null && history.size() >= (vsComputer ? 2 : 1));
+    }
 
-        for (int i = 0; i < 8; i++) {
-            int nr = r + dr[i];
-            int nc = c + dc[i];
-            if (nr >= 0 && nr < SIZE && nc >= 0 && nc < SIZE) {
-                if (board[nr][nc].isEmpty() || board[nr][nc].charAt(0) != color) {
-                    moves.add(new Point(nr, nc));
-                }
-            }
-        }
-        return moves;
+    // Takes back the last move, or against the computer its reply and the player's move before it
+    private void undo() {
+        if (computerThinking || (vsComputer && !whiteTurn) || puzzles != null) return;
+        int ply = history.size() - (vsComputer ? 2 : 1);
+        if (ply < 0) return;
+        history.truncate(ply);
+        result = "*";
+        reportPanel.clear();
+        Position pos = history.positionAt(ply).copy();
+        setBoard(pos);
+        if (clock != null) clock.start(pos.sideToMove());
+        updateTimeline();
+        updateTitle();
+        analysisPanel.positionChanged(true);
+        explorerPanel.positionChanged(currentPosition());
     }
 
-    private List<Point> getKingMoves(int r, int c, char color) {
-        List<Point> moves = new ArrayList<>();
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr == 0 && dc == 0) continue;
-                int nr = r + dr;
-                int nc = c + dc;
-                if (nr >= 0 && nr < SIZE && nc >= 0 && nc < SIZE) {
-                    if (board[nr][nc].isEmpty() || board[nr][nc].charAt(0) != color) {
-                        moves.add(new Point(nr, nc));
-                    }
-                }
-            }
-        }
-        
-        if (!isKingInCheck(color == 'w')) {
-             if ((color == 'w' ? !whiteKingMoved && !whiteRookHMoved : !blackKingMoved && !blackRookHMoved) &&
-                board[r][c + 1].isEmpty() && board[r][c + 2].isEmpty() &&
-                !isSquareAttacked(r, c + 1, color == 'b') && !isSquareAttacked(r, c + 2, color == 'b')) {
-                moves.add(new Point(r, c + 2));
-            }
-            if ((color == 'w' ? !whiteKingMoved && !whiteRookAMoved : !blackKingMoved && !blackRookAMoved) &&
-                board[r][c - 1].isEmpty() && board[r][c - 2].isEmpty() && board[r][c - 3].isEmpty() &&
-                !isSquareAttacked(r, c - 1, color == 'b') && !isSquareAttacked(r, c - 2, color == 'b')) {
-                moves.add(new Point(r, c - 2));
-            }
-        }
-        return moves;
-    }
-
-    private void addSlidingMoves(List<Point> moves, int r, int c, int[] dr, int[] dc) {
-        char color = board[r][c].charAt(0);
-        for (int i = 0; i < dr.length; i++) {
-            for (int k = 1; k < SIZE; k++) {
-                int nr = r + k * dr[i];
-                int nc = c + k * dc[i];
-                if (nr < 0 || nr >= SIZE || nc < 0 || nc >= SIZE) break;
-                if (board[nr][nc].isEmpty()) {
-                    moves.add(new Point(nr, nc));
-                } else {
-                    if (board[nr][nc].charAt(0) != color) {
-                        moves.add(new Point(nr, nc));
-                    }
-                    break;
-                }
-            }
-        }
+    // The game so far, for the post-game report
+    private Pgn.Game gameRecord() {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", puzzles != null ? "Puzzle" : simul != null ? "Simultaneous exhibition" : "Casual game");
+        tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        tags.put("White", "Player");
+        tags.put("Black", vsComputer ? "Computer (" + difficulty + ")" : "Player");
+        int[] moves = new int[history.size()];
+        for (int i = 0; i < moves.length; i++) moves[i] = history.move(i);
+        return new Pgn.Game(tags, history.positionAt(0).toFen(), moves, result, null);
     }
 
-    // --- Check and Game State Logic ---
+    // --- Move Validation ---
 
-    private Point findKing(boolean isWhite) {
-        char kingColor = isWhite ? 'w' : 'b';
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                if (board[r][c].equals(kingColor + "k")) {
-                    return new Point(r, c);
-                }
-            }
-        }
-        return null;
+    private boolean isValidMove(int r1, int c1, int r2, int c2) {
+        return (legalMoves()[r1 * SIZE + c1] & (1L << (r2 * SIZE + c2))) != 0;
     }
 
-    private boolean isKingInCheck(boolean isWhite) {
-        Point kingPos = findKing(isWhite);
-        if (kingPos == null) return true;
-        return isSquareAttacked(kingPos.x, kingPos.y, !isWhite);
-    }
-    
-    private boolean isSquareAttacked(int r, int c, boolean byWhite) {
-        char opponentColor = byWhite ? 'w' : 'b';
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (!board[i][j].isEmpty() && board[i][j].charAt(0) == opponentColor) {
-                    List<Point> moves = getPieceMovesIgnoringCheck(i, j);
-                    for (Point move : moves) {
-                        if (move.x == r && move.y == c) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
-    }
-    
-    // CORRECTED METHOD TO PREVENT STACKOVERFLOWERROR
-    private List<Point> getPieceMovesIgnoringCheck(int r, int c) {
-        List<Point> moves = new ArrayList<>();
-        String piece = board[r][c];
-        char pieceColor = piece.charAt(0);
-        char pieceType = piece.charAt(1);
-        switch (pieceType) {
-            case 'p':
-                int dir = (pieceColor == 'w') ? -1 : 1;
-                if (c > 0) moves.add(new Point(r + dir, c - 1));
-                if (c < 7) moves.add(new Point(r + dir, c + 1));
-                break;
-            case 'r': moves.addAll(getRookMoves(r, c)); break;
-            case 'n': moves.addAll(getKnightMoves(r, c)); break;
-            case 'b': moves.addAll(getBishopMoves(r, c)); break;
-            case 'q': moves.addAll(getQueenMoves(r, c)); break;
-            case 'k':
-                // For attack checks, king moves to adjacent squares only. No castling check.
-                for (int dr = -1; dr <= 1; dr++) {
-                    for (int dc = -1; dc <= 1; dc++) {
-                        if (dr == 0 && dc == 0) continue;
-                        moves.add(new Point(r + dr, c + dc));
-                    }
-                }
-                break;
-        }
-        return moves;
+    private Position currentPosition() {
+        if (position != null) return position;
+
+        int castling = 0;
+        if (!whiteKingMoved && !whiteRookHMoved) castling |= Position.WHITE_OO;
+        if (!whiteKingMoved && !whiteRookAMoved) castling |= Position.WHITE_OOO;
+        if (!blackKingMoved && !blackRookHMoved) castling |= Position.BLACK_OO;
+        if (!blackKingMoved && !blackRookAMoved) castling |= Position.BLACK_OOO;
+        int epSquare = enPassantTarget == null ? -1 : enPassantTarget.x * SIZE + enPassantTarget.y;
+
+        position = Position.fromBoard(board, whiteTurn, castling, epSquare, halfmoveClock, fullmoveNumber);
+        sideToMoveInCheck = position.inCheck();
+        return position;
     }
 
-    private List<Point> generateAllValidMoves(boolean isWhite) {
-        List<Point> allMoves = new ArrayList<>();
-        char color = isWhite ? 'w' : 'b';
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                if (!board[r][c].isEmpty() && board[r][c].charAt(0) == color) {
-                    List<Point> pieceMoves = generateValidMovesForPiece(r, c);
-                    for (Point move : pieceMoves) {
-                        allMoves.add(new Point(r, c));
-                        allMoves.add(move);
-                    }
-                }
-            }
-        }
-        return allMoves;
+    private long[] legalMoves() {
+        if (legalMoveTable != null) return legalMoveTable;
+        long[] table = new long[SIZE * SIZE];
+        currentPosition().legalTargets(table);
+        legalMoveTable = table;
+        return table;
     }
-    
+
+    // --- Check and Game State Logic ---
+
     private void checkGameState() {
-        boolean currentPlayerHasMoves = !generateAllValidMoves(whiteTurn).isEmpty();
-        if (!currentPlayerHasMoves) {
-            if (isKingInCheck(whiteTurn)) {
-                endGame(whiteTurn ? "Black wins by Checkmate!" : "White wins by Checkmate!");
+        if (!currentPosition().hasAnyLegalMove()) {
+            if (sideToMoveInCheck) {
+                endGame(whiteTurn ? "Black wins by Checkmate!" : "White wins by Checkmate!", whiteTurn ? "0-1" : "1-0");
             } else {
-                endGame("Stalemate! It's a draw.");
+                endGame("Stalemate! It's a draw.", "1/2-1/2");
             }
         }
     }
 
-    private void endGame(String message) {
-        JOptionPane.showMessageDialog(this, message, "Game Over", JOptionPane.INFORMATION_MESSAGE);
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                squares[r][c].setEnabled(false);
-            }
+    private void endGame(String message, String result) {
+        gameOver = true;
+        boardPanel.setEnabled(false);
+        EngineMetrics.get().endGame(gameId);
+        this.result = result;
+        if (clock != null) clock.stop();
+        analysisPanel.setGameOver();
+        // Simul boards leave the review to the player, so finished boards do not slow the others down
+        if (simul == null && puzzles == null && history.size() > 0) {
+            reportPanel.review();
+            sidePanels.setSelectedComponent(reportPanel);
         }
+        long shown = System.nanoTime();
+        JOptionPane.showMessageDialog(this, message, "Game Over", JOptionPane.INFORMATION_MESSAGE);
+        dialogNanos += System.nanoTime() - shown;
     }
 
     // --- AI ---
 
-    private void makeComputerMove() {
-        List<Point> allMoves = generateAllValidMoves(false); // Black's moves
-        if (allMoves.isEmpty()) return;
-
-        Point start = null, end = null;
-
-        if (difficulty.equals("Easy")) {
-            Random rand = new Random();
-            int moveIndex = rand.nextInt(allMoves.size() / 2) * 2;
-            start = allMoves.get(moveIndex);
-            end = allMoves.get(moveIndex + 1);
-        } else if (difficulty.equals("Medium")) {
-            int bestScore = Integer.MIN_VALUE;
-            for (int i = 0; i < allMoves.size(); i += 2) {
-                Point currentStart = allMoves.get(i);
-                Point currentEnd = allMoves.get(i + 1);
-
-                String captured = board[currentEnd.x][currentEnd.y];
-                board[currentEnd.x][currentEnd.y] = board[currentStart.x][currentStart.y];
-                board[currentStart.x][currentStart.y] = "";
-
-                int score = -evaluateBoard(); 
-
-                board[currentStart.x][currentStart.y] = board[currentEnd.x][currentEnd.y];
-                board[currentEnd.x][currentEnd.y] = captured;
-
-                if (score > bestScore) {
-                    bestScore = score;
-                    start = currentStart;
-                    end = currentEnd;
+    // Slowest engine reply on this simul board, or -1 before the first
+    public long maxReplyMillis() {
+        return maxReplyMillis;
+    }
+
+    // True while the board waits for the human player's move
+    public boolean isPlayersTurn() {
+        return boardPanel.isEnabled() && whiteTurn && !computerThinking;
+    }
+
+    private void startEngineSearch() {
+        if (simul != null) {
+            if (search == null) search = simul.newSearch(gameId);
+            long requested = System.nanoTime();
+            computerThinking = true;
+            simul.requestMove(search, currentPosition().copy(), result -> SwingUtilities.invokeLater(() -> {
+                lastReplyMillis = (System.nanoTime() - requested) / 1_000_000;
+                maxReplyMillis = Math.max(maxReplyMillis, lastReplyMillis);
+                applyEngineMove(result);
+            }));
+            return;
+        }
+        if (engine == null) engine = new LevelEngine(difficulty, cpuBudget, gameId);
+        Position root = currentPosition().copy();
+        TimeManager time = clock == null ? null
+                : TimeManager.forClock(clock.remainingMillis(Position.BLACK), clock.incrementMillis(), clock.delayMillis(), fullmoveNumber);
+        long requested = System.nanoTime();
+        computerThinking = true;
+        ENGINE_EXECUTOR.execute(() -> {
+            Search.Result result = engine.move(root, time);
+            SwingUtilities.invokeLater(() -> {
+                // The search starts at once; only without a clock is a quick reply held back to be seen,
+                // so the pause never comes off the engine's time
+                long wait = difficulty.minReplyMillis - (System.nanoTime() - requested) / 1_000_000;
+                if (clock != null || wait <= 0) {
+                    applyEngineMove(result);
+                    return;
                 }
-            }
-        }
-
-        if (start != null && end != null) {
-            movePiece(start.x, start.y, end.x, end.y);
-        }
+                Timer timer = new Timer((int) wait, e -> applyEngineMove(result));
+                timer.setRepeats(false);
+                timer.start();
+            });
+        });
     }
 
-    private int getPieceValue(char pieceType) {
-        switch (pieceType) {
-            case 'p': return 10;
-            case 'n': return 30;
-            case 'b': return 30;
-            case 'r': return 50;
-            case 'q': return 90;
-            case 'k': return 900;
-            default: return 0;
+    private void applyEngineMove(Search.Result result) {
+        computerThinking = false;
+        if (gameOver) { // Lost on time meanwhile; the stopped search recorded itself after endGame
+            EngineMetrics.get().endGame(gameId);
+            return;
         }
-    }
-
-    private int evaluateBoard() {
-        int score = 0;
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                if (!board[r][c].isEmpty()) {
-                    char color = board[r][c].charAt(0);
-                    char type = board[r][c].charAt(1);
-                    int value = getPieceValue(type);
-                    score += (color == 'w') ? value : -value;
-                }
-            }
+        int move = result.bestMove;
+        if (move != Move.NONE) {
+            int from = Move.from(move), to = Move.to(move);
+            movePiece(from / SIZE, from % SIZE, to / SIZE, to % SIZE, promotionChar(move));
         }
-        return score;
+        finishComputerTurn();
     }
 
     // --- UI Helpers ---
 
     private void refreshBoardColors() {
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                squares[r][c].setBackground((r + c) % 2 == 0 ? lightColor : darkColor);
-            }
-        }
+        boardPanel.clearHighlights();
+    }
+
+    // Highlights the move on the board, which may be showing a reviewed position
+    private void showHint(int move) {
+        if (reviewPly < 0 && (computerThinking || !boardPanel.isEnabled())) return;
+        int from = Move.from(move), to = Move.to(move);
+        selectedPiece = null;
+        boardPanel.setHighlights(from / SIZE, from % SIZE, 1L << to);
     }
 
     private void highlightValidMoves(int r, int c) {
-        refreshBoardColors();
-        squares[r][c].setBackground(selectedColor);
-        List<Point> moves = generateValidMovesForPiece(r, c);
-        for (Point move : moves) {
-            squares[move.x][move.y].setBackground(validMoveColor);
-        }
+        boardPanel.setHighlights(r, c, legalMoves()[r * SIZE + c]);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,46 @@
+import javax.swing.*;
+import java.awt.*;
+
+// Shows both sides' remaining time and watches for a flag fall. The side to move is shown in bold.
+public class ClockPanel extends JPanel {
+    private static final int REFRESH_MS = 100;
+    private static final Font PLAIN = new Font(Font.MONOSPACED, Font.PLAIN, 20);
+    private static final Font BOLD = PLAIN.deriveFont(Font.BOLD);
+
+    private final ChessClock clock;
+    private final JLabel whiteLabel = new JLabel();
+    private final JLabel blackLabel = new JLabel();
+    private boolean flagReported = false;
+
+    public ClockPanel(ChessClock clock, Runnable onFlag) {
+        super(new GridLayout(1, 2, 12, 0));
+        this.clock = clock;
+        setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        for (JLabel label : new JLabel[]{whiteLabel, blackLabel}) {
+            label.setHorizontalAlignment(SwingConstants.CENTER);
+            add(label);
+        }
+
+        Timer refresh = new Timer(REFRESH_MS, e -> {
+            if (!flagReported && clock.checkFlag()) {
+                flagReported = true;
+                onFlag.run();
+            }
+            update();
+        });
+        refresh.start();
+        update();
+    }
+
+    private void update() {
+        showSide(whiteLabel, "White", Position.WHITE);
+        showSide(blackLabel, "Black", Position.BLACK);
+    }
+
+    private void showSide(JLabel label, String name, int color) {
+        long millis = clock.remainingMillis(color);
+        label.setText(name + "  " + ChessClock.format(millis));
+        label.setFont(clock.runningSide() == color ? BOLD : PLAIN);
+        label.setForeground(millis <= 0 ? Color.RED : Color.BLACK);
+    }
+}
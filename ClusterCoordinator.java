@@ -0,0 +1,374 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Spreads perft and analysis over ClusterWorker JVMs connected over TCP. Every worker connection is
+// a slot served by its own thread, which takes the next task from a shared queue, so fast workers
+// simply take more tasks. Perft is split into the subtrees a few plies below the root (identical
+// positions are searched once and counted with their multiplicity); analysis sends one task per
+// position.
+//
+// A worker that disconnects mid-task has its task put back at the head of the queue. A slow or hung
+// worker is worked around: once the queue is empty, an idle slot starts a second copy of the task
+// that has been running longest, if it has run more than SPECULATE_FACTOR times the average task
+// time. The first result wins and the other copy's result is dropped. A worker that stays connected
+// but sends nothing for TIMEOUT_FACTOR times that threshold is dropped like a disconnected one; each
+// timeout doubles the task's allowance, so a task that is merely long still finishes.
+public class ClusterCoordinator implements AutoCloseable {
+    private static final double SPECULATE_FACTOR = 3;
+    private static final double TIMEOUT_FACTOR = 10;
+    private static final long MIN_TIMEOUT_MS = 10_000;
+    private static final long FIRST_TIMEOUT_MS = 600_000; // Before any task has finished to give an average
+    private static final int MAX_COPIES = 2;
+    private static final long POLL_MS = 20;
+    // Options passed on to spawned workers: heap size and module flags, not debug agents or cluster.* settings
+    private static final String[] WORKER_OPTIONS = {"-Xmx", "-Xms", "--add-modules", "--add-exports", "--add-opens"};
+
+    private static final class Task {
+        final long id;
+        final String request; // Everything after the id, tab-separated
+        final String kind;
+        final CompletableFuture<String[]> result = new CompletableFuture<>();
+        final AtomicInteger copies = new AtomicInteger();
+        volatile long started; // nanoTime when the oldest running copy started
+        volatile int timeouts;
+
+        Task(long id, String kind, String request) {
+            this.id = id;
+            this.kind = kind;
+            this.request = request;
+        }
+    }
+
+    private final ServerSocket server;
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    private final Map<Long, Task> running = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong(), completedNanos = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong(), speculated = new AtomicLong(), timedOut = new AtomicLong();
+    private final List<Process> spawned = new ArrayList<>();
+    private volatile boolean closed;
+
+    private ClusterCoordinator(ServerSocket server) {
+        this.server = server;
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Listens on the port (0 picks a free one) on all interfaces
+    public static ClusterCoordinator start(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+        return new ClusterCoordinator(server);
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public int workers() {
+        return workers.get();
+    }
+
+    public long requeued() {
+        return requeued.get();
+    }
+
+    public long speculated() {
+        return speculated.get();
+    }
+
+    public long timedOut() {
+        return timedOut.get();
+    }
+
+    // Starts local worker JVMs with this JVM's class path, heap size and module flags, for testing on one machine
+    public List<Process> spawnLocalWorkers(int count, int threadsEach) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> started = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                for (String prefix : WORKER_OPTIONS) {
+                    if (option.startsWith(prefix)) {
+                        command.add(option);
+                        break;
+                    }
+                }
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("ClusterWorker");
+            command.add("localhost");
+            command.add(Integer.toString(port()));
+            command.add(Integer.toString(threadsEach));
+            Process p = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            started.add(p);
+        }
+        synchronized (spawned) {
+            spawned.addAll(started);
+        }
+        return started;
+    }
+
+    public boolean awaitWorkers(int count, long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (workers.get() < count) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(POLL_MS);
+        }
+        return true;
+    }
+
+    // --- Jobs ---
+
+    public long perft(Position root, int depth, int splitPlies) {
+        int split = Math.max(0, Math.min(splitPlies, depth - 1));
+        Map<String, Long> leaves = new HashMap<>();
+        collect(root.copy(), split, leaves);
+        List<CompletableFuture<String[]>> results = new ArrayList<>();
+        List<Long> multiplicity = new ArrayList<>();
+        for (Map.Entry<String, Long> e : leaves.entrySet()) {
+            results.add(submit("perft", (depth - split) + "\t" + e.getKey()));
+            multiplicity.add(e.getValue());
+        }
+        long total = 0;
+        for (int i = 0; i < results.size(); i++) {
+            total += Long.parseLong(results.get(i).join()[0]) * multiplicity.get(i);
+        }
+        return total;
+    }
+
+    // Positions (as FEN, with their number of paths) ply plies below pos
+    private static void collect(Position pos, int plies, Map<String, Long> leaves) {
+        if (plies == 0) {
+            leaves.merge(pos.toFen(), 1L, Long::sum);
+            return;
+        }
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(moves);
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(moves[i]);
+            collect(pos, plies - 1, leaves);
+            pos.unmakeMove(moves[i]);
+        }
+    }
+
+    // One result per position, in order; a position the worker rejects comes back as a failed future
+    public List<CompletableFuture<BulkEvaluator.Scored>> analyse(List<String> fens, int depth, long nodes) {
+        List<CompletableFuture<BulkEvaluator.Scored>> results = new ArrayList<>();
+        for (String fen : fens) {
+            results.add(submit("analyse", depth + "\t" + nodes + "\t" + fen).thenApply(f ->
+                    new BulkEvaluator.Scored(fen, Integer.parseInt(f[0]), Integer.parseInt(f[1]),
+                            Integer.parseInt(f[2]), Long.parseLong(f[3]))));
+        }
+        return results;
+    }
+
+    // The result fields after "done <id>"
+    public CompletableFuture<String[]> submit(String kind, String request) {
+        Task task = new Task(nextId.getAndIncrement(), kind, request);
+        queue.add(task);
+        return task.result;
+    }
+
+    // --- Worker connections ---
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                Thread t = new Thread(() -> serve(socket), "cluster-slot-" + socket.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!closed) System.err.println("Cluster accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        workers.incrementAndGet();
+        Task task = null;
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+            while (!closed) {
+                task = nextTask();
+                if (task == null) continue;
+                long start = System.nanoTime();
+                out.write(task.kind + '\t' + task.id + '\t' + task.request + '\n');
+                out.flush();
+                s.setSoTimeout((int) Math.min(Integer.MAX_VALUE, replyTimeoutMillis() << Math.min(task.timeouts, 16)));
+                String line = in.readLine();
+                if (line == null) throw new SocketException("worker closed the connection");
+                finish(task, line.split("\t"), System.nanoTime() - start);
+                task = null;
+            }
+        } catch (IOException | InterruptedException e) {
+            if (task != null && e instanceof SocketTimeoutException) {
+                task.timeouts++;
+                timedOut.incrementAndGet();
+            }
+            if (task != null && task.copies.decrementAndGet() == 0 && !task.result.isDone()) {
+                // The only copy died or hung with its worker: start it again before anything else
+                running.remove(task.id);
+                requeued.incrementAndGet();
+                queue.addFirst(task);
+            }
+        } finally {
+            workers.decrementAndGet();
+        }
+    }
+
+    // How long a worker may take to reply before it is taken to have hung
+    private long replyTimeoutMillis() {
+        long done = completed.get();
+        if (done == 0) return FIRST_TIMEOUT_MS;
+        double threshold = SPECULATE_FACTOR * completedNanos.get() / done;
+        return Math.max(MIN_TIMEOUT_MS, (long) (TIMEOUT_FACTOR * threshold / 1_000_000));
+    }
+
+    // The next queued task, or a second copy of a straggler once the queue is empty
+    private Task nextTask() throws InterruptedException {
+        Task task = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+        if (task != null) {
+            if (task.result.isDone()) return null;
+            task.copies.incrementAndGet();
+            task.started = System.nanoTime();
+            running.put(task.id, task);
+            return task;
+        }
+        long done = completed.get();
+        if (done == 0) return null;
+        long threshold = (long) (SPECULATE_FACTOR * completedNanos.get() / done);
+        Task oldest = null;
+        long now = System.nanoTime();
+        for (Task t : running.values()) {
+            if (t.result.isDone() || t.copies.get() >= MAX_COPIES || now - t.started < threshold) continue;
+            if (oldest == null || t.started < oldest.started) oldest = t;
+        }
+        if (oldest == null || oldest.copies.incrementAndGet() > MAX_COPIES) {
+            if (oldest != null) oldest.copies.decrementAndGet();
+            return null;
+        }
+        speculated.incrementAndGet();
+        return oldest;
+    }
+
+    private void finish(Task task, String[] fields, long nanos) {
+        task.copies.decrementAndGet();
+        if (task.result.isDone()) return; // Another copy was faster
+        if (fields[0].equals("done") && fields.length > 2) {
+            String[] values = new String[fields.length - 2];
+            System.arraycopy(fields, 2, values, 0, values.length);
+            if (task.result.complete(values)) {
+                completed.incrementAndGet();
+                completedNanos.addAndGet(nanos);
+            }
+        } else {
+            task.result.completeExceptionally(new IllegalStateException(
+                    fields.length > 2 ? fields[2] : "bad reply " + String.join(" ", fields)));
+        }
+        running.remove(task.id);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        synchronized (spawned) {
+            for (Process p : spawned) p.destroy();
+        }
+    }
+
+    // java ClusterCoordinator <port> perft <depth> [fen]
+    // java ClusterCoordinator <port> analyse <file|-> [depth=8] [nodes=0]
+    // Waits for -Dcluster.workers connections (default 1); -Dcluster.spawn=N first starts N local worker
+    // JVMs of -Dcluster.threads threads (default 1); perft splits -Dcluster.split plies below the root
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("usage: java ClusterCoordinator <port> perft <depth> [fen]");
+            System.err.println("       java ClusterCoordinator <port> analyse <file|-> [depth] [nodes]");
+            System.exit(2);
+        }
+        int spawn = Integer.getInteger("cluster.spawn", 0);
+        int wanted = Integer.getInteger("cluster.workers", Math.max(1, spawn * Integer.getInteger("cluster.threads", 1)));
+        try (ClusterCoordinator cluster = start(Integer.parseInt(args[0]))) {
+            if (spawn > 0) cluster.spawnLocalWorkers(spawn, Integer.getInteger("cluster.threads", 1));
+            System.err.printf("Listening on port %d, waiting for %d worker slots%n", cluster.port(), wanted);
+            cluster.awaitWorkers(wanted, Long.MAX_VALUE / 2);
+            long start = System.nanoTime();
+
+            if (args[1].equals("perft")) {
+                Position root = Position.fromFen(args.length > 3 ? args[3] : Position.START_FEN);
+                long nodes = cluster.perft(root, Integer.parseInt(args[2]), Integer.getInteger("cluster.split", 2));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(nodes);
+                System.err.printf("perft %s in %.2f s (%.0f nodes/s) on %d slots, %d requeued, %d timed out, %d speculative copies%n",
+                        args[2], seconds, nodes / seconds, cluster.workers(), cluster.requeued(), cluster.timedOut(),
+                        cluster.speculated());
+            } else if (args[1].equals("analyse")) {
+                List<String> fens = new ArrayList<>();
+                try (BufferedReader in = args[2].equals("-")
+                        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                        : Files.newBufferedReader(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (!line.trim().isEmpty()) fens.add(line.trim());
+                    }
+                }
+                int depth = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+                long nodes = args.length > 4 ? Long.parseLong(args[4]) : 0;
+                List<CompletableFuture<BulkEvaluator.Scored>> results = cluster.analyse(fens, depth, nodes);
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        out.write(results.get(i).join().toLine());
+                    } catch (RuntimeException e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        out.write(fens.get(i) + "\terror: " + cause.getMessage());
+                    }
+                    out.write('\n');
+                }
+                out.flush();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.err.printf("%d positions in %.1f s (%.0f/s) on %d slots, %d requeued, %d timed out, %d speculative copies%n",
+                        fens.size(), seconds, fens.size() / seconds, cluster.workers(), cluster.requeued(),
+                        cluster.timedOut(), cluster.speculated());
+            } else {
+                System.err.println("unknown job " + args[1]);
+                System.exit(2);
+            }
+        }
+    }
+}
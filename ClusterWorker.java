@@ -0,0 +1,83 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Worker side of ClusterCoordinator. Each thread holds one connection and works one task at a time,
+// so a worker with N threads is N slots for the coordinator. Tasks and results are tab-separated
+// lines:
+//   perft <id> <depth> <fen>                  -> done <id> <nodes>
+//   analyse <id> <depth> <nodes> <fen>        -> done <id> <move> <white score> <depth> <nodes>
+// and "error <id> <message>" if a task cannot be done. The worker exits when the coordinator closes
+// the connections.
+public class ClusterWorker implements Runnable {
+    private final String host;
+    private final int port;
+    private final long taskDelayMillis; // -Dcluster.taskDelay: artificial slowness, for testing rebalancing
+    private Search search;
+
+    public ClusterWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.taskDelayMillis = Long.getLong("cluster.taskDelay", 0);
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(handle(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Worker connection to " + host + ":" + port + " closed: " + e.getMessage());
+        }
+    }
+
+    private String handle(String line) {
+        String[] f = line.split("\t");
+        String id = f.length > 1 ? f[1] : "?";
+        try {
+            if (taskDelayMillis > 0) Thread.sleep(taskDelayMillis);
+            switch (f[0]) {
+                case "perft":
+                    return "done\t" + id + '\t' + Position.fromFen(f[3]).perft(Integer.parseInt(f[2]));
+                case "analyse": {
+                    if (search == null) search = new Search(new TranspositionTable(16), null);
+                    Position pos = Position.fromFen(f[4]);
+                    Search.Result r = search.search(pos, new Search.Limits(Integer.parseInt(f[2]), 0, Long.parseLong(f[3])));
+                    int whiteScore = pos.sideToMove() == Position.WHITE ? r.score : -r.score;
+                    return "done\t" + id + '\t' + r.bestMove + '\t' + whiteScore + '\t' + r.depth + '\t' + r.nodes;
+                }
+                default:
+                    return "error\t" + id + "\tunknown task " + f[0];
+            }
+        } catch (RuntimeException | InterruptedException e) {
+            return "error\t" + id + '\t' + e;
+        }
+    }
+
+    // java ClusterWorker <host> <port> [threads=all cores]
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: java ClusterWorker <host> <port> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new ClusterWorker(args[0], Integer.parseInt(args[1])), "cluster-worker-" + i);
+            workers[i].start();
+        }
+        for (Thread t : workers) t.join();
+    }
+}
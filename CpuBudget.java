@@ -0,0 +1,61 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+// One game's CPU ceiling, as a token bucket of CPU time. It fills at share CPU-seconds per second
+// of wall time, holds at most burstMillis, and each search is charged the CPU time its thread
+// actually used. A move may only think for what the bucket holds, so over any stretch of time a game
+// uses at most share of a core plus the burst. A host with C cores therefore keeps up with C / share
+// games whatever they do. When the bucket is empty, moves fall back to a search of MIN_NODES.
+public final class CpuBudget {
+    public static final long MIN_NODES = 300;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final double share;
+    private final long burstNanos;
+    private double tokens; // Nanoseconds of CPU; negative after a search overran its grant
+    private long lastRefill = System.nanoTime();
+    private long usedNanos;
+
+    public CpuBudget(double share, long burstMillis) {
+        this.share = share;
+        this.burstNanos = burstMillis * 1_000_000;
+        this.tokens = burstNanos;
+    }
+
+    // -Dchess.cpu.share (cores per game, default 1) and -Dchess.cpu.burst (ms, default 10000)
+    public static CpuBudget fromProperties() {
+        return new CpuBudget(Double.parseDouble(System.getProperty("chess.cpu.share", "1")),
+                Long.getLong("chess.cpu.burst", 10_000));
+    }
+
+    public double share() {
+        return share;
+    }
+
+    public synchronized long availableMillis() {
+        refill();
+        return Math.max(0, (long) tokens / 1_000_000);
+    }
+
+    public synchronized void charge(long cpuNanos) {
+        refill();
+        tokens -= cpuNanos;
+        usedNanos += cpuNanos;
+    }
+
+    public synchronized long usedNanos() {
+        return usedNanos;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burstNanos, tokens + (now - lastRefill) * share);
+        lastRefill = now;
+    }
+
+    // CPU time of the calling thread, or wall time where the JVM cannot measure it
+    static long threadCpuNanos() {
+        long cpu = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        return cpu >= 0 ? cpu : System.nanoTime();
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Random;
+
+// A playing strength defined by what a move may cost rather than by which algorithm plays it. Every
+// level runs the same search under a node and time budget; weaker levels add evaluation noise and
+// choose at random among the top lines within a margin of the best, preferring the better ones. A
+// weak move therefore costs less CPU than a strong one, never more.
+public final class Difficulty {
+    public static final Difficulty EASY = new Difficulty("Easy", 2_000, 50, 1, 150, 4, 250, 500);
+    public static final Difficulty MEDIUM = new Difficulty("Medium", 25_000, 250, 4, 40, 3, 60, 500);
+    public static final Difficulty HARD = new Difficulty("Hard", 0, 1500, 64, 0, 1, 0, 0);
+    private static final Difficulty[] LEVELS = {EASY, MEDIUM, HARD};
+
+    public final String name;
+    public final long nodes; // Per move; 0 for no node limit
+    public final long millis; // Think time per move without a clock, and the cap with one for node-limited levels
+    public final int hashMb;
+    public final int evalNoise; // Centipawns
+    public final int lines; // Root moves considered for the random choice
+    public final int margin; // Centipawns behind the best line a candidate may be
+    public final long minReplyMillis; // Without a clock, a faster reply is held back this long so it can be seen
+
+    private Difficulty(String name, long nodes, long millis, int hashMb, int evalNoise, int lines, int margin,
+                       long minReplyMillis) {
+        this.name = name;
+        this.nodes = nodes;
+        this.millis = millis;
+        this.hashMb = hashMb;
+        this.evalNoise = evalNoise;
+        this.lines = lines;
+        this.margin = margin;
+        this.minReplyMillis = minReplyMillis;
+    }
+
+    public static Difficulty named(String name) {
+        for (Difficulty d : LEVELS) {
+            if (d.name.equalsIgnoreCase(name)) return d;
+        }
+        throw new IllegalArgumentException("Unknown difficulty " + name);
+    }
+
+    public static String[] names() {
+        String[] names = new String[LEVELS.length];
+        for (int i = 0; i < LEVELS.length; i++) names[i] = LEVELS[i].name;
+        return names;
+    }
+
+    public boolean fullStrength() {
+        return evalNoise == 0 && lines == 1;
+    }
+
+    // Index of the line to play: each line within margin of the best is weighted by
+    // exp(-3 * loss / margin), so a line at the margin is played about 20 times less often than the best
+    public int choose(Search.Line[] found, Random random) {
+        if (found.length < 2 || found[1] == null || margin == 0) return 0;
+        int best = found[0].score;
+        double[] weights = new double[found.length];
+        double total = 0;
+        for (int i = 0; i < found.length && found[i] != null; i++) {
+            int loss = best - found[i].score;
+            if (loss > margin) break;
+            weights[i] = Math.exp(-3.0 * loss / margin);
+            total += weights[i];
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
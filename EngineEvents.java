@@ -0,0 +1,96 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder events for the engine and the board UI. All are disabled unless a recording
+// enables them (see chess.jfc); a disabled event's begin/commit compiles down to almost nothing.
+public final class EngineEvents {
+    private EngineEvents() {
+    }
+
+    @Name("chess.Search")
+    @Label("Engine Search")
+    @Category({"Chess", "Engine"})
+    @Description("One engine search: a game move, analysis, or any other Search.search or analyze call")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class SearchEvent extends Event {
+        @Label("Game")
+        public String gameId;
+        @Label("Depth")
+        public int depth;
+        @Label("Nodes")
+        public long nodes;
+        @Label("Score")
+        public int score;
+        @Label("Best Move")
+        public String bestMove;
+    }
+
+    @Name("chess.SearchIteration")
+    @Label("Search Iteration")
+    @Category({"Chess", "Engine"})
+    @Description("One completed iterative-deepening iteration")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class IterationEvent extends Event {
+        @Label("Depth")
+        public int depth;
+        @Label("Nodes")
+        public long nodes;
+        @Label("Score")
+        public int score;
+        @Label("Best Move")
+        public String bestMove;
+    }
+
+    @Name("chess.HashResize")
+    @Label("Hash Resize")
+    @Category({"Chess", "Engine"})
+    @Enabled(false)
+    public static final class HashResizeEvent extends Event {
+        @Label("Old Size")
+        @DataAmount
+        public long oldBytes;
+        @Label("New Size")
+        @DataAmount
+        public long newBytes;
+    }
+
+    @Name("chess.HumanMove")
+    @Label("Human Move")
+    @Category({"Chess", "UI"})
+    @Description("A move made on the board by a player, from click to repaint request; dialogs it opens are timed separately")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class HumanMoveEvent extends Event {
+        @Label("Move")
+        public String move;
+        @Label("Validation Time")
+        @Timespan
+        public long validationNanos;
+        @Label("Update Time")
+        @Timespan
+        public long updateNanos;
+        @Label("Dialog Time")
+        @Description("Time the move's promotion, puzzle or game-over dialog was open; not part of the update time")
+        @Timespan
+        public long dialogNanos;
+    }
+
+    @Name("chess.BoardPaint")
+    @Label("Board Paint")
+    @Category({"Chess", "UI"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class BoardPaintEvent extends Event {
+        @Label("Squares Painted")
+        public int squares;
+    }
+}
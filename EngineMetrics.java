@@ -0,0 +1,203 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class EngineMetrics implements EngineMetricsMBean {
+    public static final String OBJECT_NAME = "ChessGame:type=EngineMetrics";
+    public static final int MAX_GAMES = 1024; // Per-game histograms kept at once; later games only count globally
+
+    private static volatile EngineMetrics instance;
+
+    // Searches keep plain per-thread counters in the hot loop and add them here once per iteration,
+    // so the striped adders are touched a handful of times per move rather than once per node.
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder depthSum = new LongAdder();
+    private final LongAdder hashProbes = new LongAdder();
+    private final LongAdder hashHits = new LongAdder();
+    private final LongAdder hashCollisions = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder firstMoveCutoffs = new LongAdder();
+
+    private volatile int lastDepth;
+    private volatile long lastNodesPerSecond;
+    private volatile long lastTimeMillis;
+    private volatile double lastBranchingFactor;
+
+    private final LatencyHistogram globalLatency = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> gameLatency = new ConcurrentHashMap<>();
+
+    public static EngineMetrics get() {
+        EngineMetrics m = instance;
+        if (m == null) {
+            synchronized (EngineMetrics.class) {
+                m = instance;
+                if (m == null) {
+                    m = new EngineMetrics();
+                    m.register();
+                    instance = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Engine metrics not published over JMX: " + e.getMessage());
+        }
+    }
+
+    // --- Recording ---
+
+    public void addIteration(long nodeCount, long probes, long hits, long collisions, long betaCutoffs, long firstCutoffs) {
+        nodes.add(nodeCount);
+        hashProbes.add(probes);
+        hashHits.add(hits);
+        hashCollisions.add(collisions);
+        cutoffs.add(betaCutoffs);
+        firstMoveCutoffs.add(firstCutoffs);
+    }
+
+    public void recordSearch(String gameId, int depth, long nodeCount, long nanos, double branchingFactor) {
+        searches.increment();
+        searchNanos.add(nanos);
+        depthSum.add(depth);
+        lastDepth = depth;
+        lastTimeMillis = nanos / 1_000_000;
+        lastNodesPerSecond = nanos == 0 ? 0 : nodeCount * 1_000_000_000L / nanos;
+        lastBranchingFactor = branchingFactor;
+        globalLatency.record(nanos);
+        if (gameId == null) return;
+        LatencyHistogram game = gameLatency.get(gameId);
+        if (game == null && gameLatency.size() < MAX_GAMES) game = gameHistogram(gameId);
+        if (game != null) game.record(nanos);
+    }
+
+    public LatencyHistogram gameHistogram(String gameId) {
+        return gameLatency.computeIfAbsent(gameId, id -> new LatencyHistogram());
+    }
+
+    // Drops the game's histogram; call when a game ends so hosting many games keeps the map small
+    public void endGame(String gameId) {
+        gameLatency.remove(gameId);
+    }
+
+    // --- MBean attributes ---
+
+    @Override
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    @Override
+    public long getNodesSearched() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getNodesPerSecond() {
+        long nanos = searchNanos.sum();
+        return nanos == 0 ? 0 : nodes.sum() * 1_000_000_000L / nanos;
+    }
+
+    @Override
+    public long getLastSearchNodesPerSecond() {
+        return lastNodesPerSecond;
+    }
+
+    @Override
+    public int getLastDepthReached() {
+        return lastDepth;
+    }
+
+    @Override
+    public double getAverageDepthReached() {
+        long n = searches.sum();
+        return n == 0 ? 0.0 : (double) depthSum.sum() / n;
+    }
+
+    @Override
+    public double getEffectiveBranchingFactor() {
+        return lastBranchingFactor;
+    }
+
+    @Override
+    public double getHashHitRate() {
+        long probes = hashProbes.sum();
+        return probes == 0 ? 0.0 : (double) hashHits.sum() / probes;
+    }
+
+    @Override
+    public double getHashCollisionRate() {
+        long probes = hashProbes.sum();
+        return probes == 0 ? 0.0 : (double) hashCollisions.sum() / probes;
+    }
+
+    @Override
+    public double getAverageTimePerMoveMillis() {
+        long n = searches.sum();
+        return n == 0 ? 0.0 : searchNanos.sum() / 1e6 / n;
+    }
+
+    @Override
+    public long getLastTimePerMoveMillis() {
+        return lastTimeMillis;
+    }
+
+    @Override
+    public double getCutoffOnFirstMovePercent() {
+        long c = cutoffs.sum();
+        return c == 0 ? 0.0 : 100.0 * firstMoveCutoffs.sum() / c;
+    }
+
+    @Override
+    public String[] getLatencyBucketLabels() {
+        return LatencyHistogram.bucketLabels();
+    }
+
+    @Override
+    public long[] getGlobalLatencyHistogram() {
+        return globalLatency.snapshot();
+    }
+
+    @Override
+    public long getGlobalLatencyP50Millis() {
+        return globalLatency.percentileMillis(0.50);
+    }
+
+    @Override
+    public long getGlobalLatencyP99Millis() {
+        return globalLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public String[] getGameIds() {
+        return gameLatency.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public long[] gameLatencyHistogram(String gameId) {
+        LatencyHistogram h = gameLatency.get(gameId);
+        return h == null ? new long[LatencyHistogram.BUCKETS] : h.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder a : new LongAdder[]{searches, nodes, searchNanos, depthSum, hashProbes, hashHits,
+                hashCollisions, cutoffs, firstMoveCutoffs}) {
+            a.reset();
+        }
+        globalLatency.reset();
+        gameLatency.values().forEach(LatencyHistogram::reset);
+    }
+}
@@ -0,0 +1,39 @@
+public interface EngineMetricsMBean {
+    long getSearches();
+
+    long getNodesSearched();
+
+    long getNodesPerSecond();
+
+    long getLastSearchNodesPerSecond();
+
+    int getLastDepthReached();
+
+    double getAverageDepthReached();
+
+    double getEffectiveBranchingFactor();
+
+    double getHashHitRate();
+
+    double getHashCollisionRate();
+
+    double getAverageTimePerMoveMillis();
+
+    long getLastTimePerMoveMillis();
+
+    double getCutoffOnFirstMovePercent();
+
+    String[] getLatencyBucketLabels();
+
+    long[] getGlobalLatencyHistogram();
+
+    long getGlobalLatencyP50Millis();
+
+    long getGlobalLatencyP99Millis();
+
+    String[] getGameIds();
+
+    long[] gameLatencyHistogram(String gameId);
+
+    void reset();
+}
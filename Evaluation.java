@@ -0,0 +1,103 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public final class Evaluation {
+    // Parameter layout: material by piece type, then a piece-square table per type from White's point of
+    // view (Black's squares are mirrored). Scores are in centipawns.
+    public static final int MATERIAL = 0;
+    public static final int PST = 7;
+    public static final int PARAM_COUNT = PST + 6 * 64;
+
+    private static final int[] DEFAULT_MATERIAL = {0, 100, 300, 300, 500, 900, 9000};
+    private static final String[] TYPE_NAMES = {"", "pawn", "knight", "bishop", "rook", "queen", "king"};
+
+    private static final int[] PARAMS = defaultParameters();
+
+    static {
+        // Tuned parameters from -Dchess.eval (default chess.eval in the working directory) if present
+        Path path = Paths.get(System.getProperty("chess.eval", "chess.eval"));
+        if (Files.isRegularFile(path)) {
+            try {
+                System.arraycopy(readParameters(path), 0, PARAMS, 0, PARAM_COUNT);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Could not load evaluation parameters " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    public static int pieceValue(int type) {
+        return PARAMS[MATERIAL + type];
+    }
+
+    public static int pstIndex(int type, int relativeSquare) {
+        return PST + (type - 1) * 64 + relativeSquare;
+    }
+
+    // Score from the point of view of the side to move; the network when one is attached to the position
+    public static int evaluate(Position pos) {
+        Nnue.Accumulator acc = pos.accumulator();
+        if (acc != null) return acc.evaluate(pos.sideToMove());
+        int score = 0;
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            int base = PST + (type - 1) * 64;
+            long white = pos.pieces(Position.WHITE, type);
+            long black = pos.pieces(Position.BLACK, type);
+            score += PARAMS[MATERIAL + type] * (Long.bitCount(white) - Long.bitCount(black));
+            for (; white != 0; white &= white - 1) score += PARAMS[base + Long.numberOfTrailingZeros(white)];
+            for (; black != 0; black &= black - 1) score -= PARAMS[base + (Long.numberOfTrailingZeros(black) ^ 56)];
+        }
+        return pos.sideToMove() == Position.WHITE ? score : -score;
+    }
+
+    // --- Parameters ---
+
+    public static int[] parameters() {
+        return PARAMS.clone();
+    }
+
+    public static int[] defaultParameters() {
+        int[] params = new int[PARAM_COUNT];
+        System.arraycopy(DEFAULT_MATERIAL, 0, params, MATERIAL, DEFAULT_MATERIAL.length);
+        return params;
+    }
+
+    public static String parameterName(int index) {
+        if (index < PST) return "material." + TYPE_NAMES[index - MATERIAL];
+        int type = (index - PST) / 64 + 1;
+        return "pst." + TYPE_NAMES[type] + "." + Move.squareName((index - PST) % 64);
+    }
+
+    // Text format: one "name value" pair per line; names not listed keep their default value
+    public static int[] readParameters(Path path) throws IOException {
+        java.util.Map<String, Integer> indexByName = new java.util.HashMap<>();
+        for (int i = 1; i < PARAM_COUNT; i++) indexByName.put(parameterName(i), i);
+        int[] params = defaultParameters();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                Integer index = indexByName.get(parts[0]);
+                if (index == null || parts.length != 2) throw new IllegalArgumentException("Bad line: " + line);
+                params[index] = Integer.parseInt(parts[1]);
+            }
+        }
+        return params;
+    }
+
+    public static void writeParameters(int[] params, Path path, String comment) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            if (comment != null) out.write("# " + comment + "\n");
+            for (int i = 1; i < PARAM_COUNT; i++) out.write(parameterName(i) + " " + params[i] + "\n");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// Opening explorer: the moves played from the current position in the indexed games, with their
+// results. Lookups are a binary search over the memory-mapped index, so they run on the EDT.
+public class ExplorerPanel extends JPanel {
+    private static final String[] COLUMNS = {"Move", "Games", "White", "Draw", "Black"};
+
+    private final OpeningIndex index;
+    private final List<Row> rows = new ArrayList<>();
+    private final RowModel model = new RowModel();
+    private final JTable table = new JTable(model);
+    private final JLabel statusLabel = new JLabel(" ");
+
+    private static class Row {
+        final int move;
+        final String san;
+        final OpeningIndex.MoveStats stats;
+
+        Row(int move, String san, OpeningIndex.MoveStats stats) {
+            this.move = move;
+            this.san = san;
+            this.stats = stats;
+        }
+    }
+
+    public ExplorerPanel(IntConsumer moveHandler) {
+        super(new BorderLayout(6, 6));
+        this.index = openIndex();
+        setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            int selected = table.getSelectedRow();
+            if (!e.getValueIsAdjusting() && selected >= 0) moveHandler.accept(rows.get(selected).move);
+        });
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+        if (index == null) statusLabel.setText("No opening index");
+    }
+
+    // The index named by -Dchess.openings (default openings.idx), or null if there is none
+    private static OpeningIndex openIndex() {
+        Path path = Paths.get(System.getProperty("chess.openings", "openings.idx"));
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            return OpeningIndex.open(path);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Opening index " + path + " not loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void positionChanged(Position position) {
+        if (index == null) return;
+        rows.clear();
+        long total = 0;
+        Position pos = position.copy();
+        int[] legal = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(legal);
+        for (OpeningIndex.MoveStats stats : index.lookup(pos.hash())) {
+            // A hash collision could name a move that is not legal here
+            if (!contains(legal, n, stats.move)) continue;
+            rows.add(new Row(stats.move, Pgn.toSan(pos, stats.move), stats));
+            total += stats.games();
+        }
+        model.fireTableDataChanged();
+        statusLabel.setText(rows.isEmpty() ? "Out of book" : total + " games");
+    }
+
+    private static boolean contains(int[] moves, int n, int move) {
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    private class RowModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Row r = rows.get(row);
+            long games = r.stats.games();
+            switch (column) {
+                case 0: return r.san;
+                case 1: return games;
+                case 2: return percent(r.stats.whiteWins, games);
+                case 3: return percent(r.stats.draws, games);
+                default: return percent(r.stats.blackWins, games);
+            }
+        }
+
+        private String percent(long count, long games) {
+            return String.format("%.0f%%", 100.0 * count / Math.max(1, games));
+        }
+    }
+}
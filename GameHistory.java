@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The moves of one game with packed snapshots (Position.pack, 40 bytes) of every interval-th
+// position. positionAt(ply) starts from the nearest snapshot at or before the ply and replays at
+// most interval - 1 moves, so seeking costs the same anywhere in a long game. A cursor remembers
+// the last position returned: stepping forward from it replays only the moves in between, and
+// stepping back unmakes them, which keeps dragging a timeline slider cheap.
+public class GameHistory {
+    public static final int DEFAULT_INTERVAL = 16;
+
+    private final int interval;
+    private final List<long[]> snapshots = new ArrayList<>(); // snapshots[i] is the position at ply i * interval
+    private int[] moves = new int[256];
+    private int size;
+
+    private Position cursor;
+    private int cursorPly = -1;
+    private int cursorBase; // Ply of the snapshot the cursor was replayed from; it can unmake back to here
+
+    public GameHistory(Position start) {
+        this(start, Integer.getInteger("chess.history.interval", DEFAULT_INTERVAL));
+    }
+
+    public GameHistory(Position start, int interval) {
+        this.interval = Math.max(1, interval);
+        snapshots.add(start.pack());
+    }
+
+    // Number of moves, i.e. the ply of the latest position
+    public int size() {
+        return size;
+    }
+
+    public int move(int ply) {
+        if (ply < 0 || ply >= size) throw new IndexOutOfBoundsException("ply " + ply + " of " + size);
+        return moves[ply];
+    }
+
+    // Appends a move made from the latest position; after is the position it leads to
+    public void add(int move, Position after) {
+        if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+        moves[size++] = move;
+        if (size % interval == 0) snapshots.add(after.pack());
+    }
+
+    // Drops every move from ply on, so the game continues from the position at ply
+    public void truncate(int ply) {
+        if (ply < 0 || ply > size) throw new IndexOutOfBoundsException("ply " + ply + " of " + size);
+        size = ply;
+        while (snapshots.size() > size / interval + 1) snapshots.remove(snapshots.size() - 1);
+        if (cursorPly > size) {
+            cursor = null;
+            cursorPly = -1;
+        }
+    }
+
+    // The position after ply moves; the result is shared with the next call, so copy it to keep it
+    public Position positionAt(int ply) {
+        if (ply < 0 || ply > size) throw new IndexOutOfBoundsException("ply " + ply + " of " + size);
+        int base = ply / interval * interval;
+        if (cursor == null || ply < cursorBase || (ply > cursorPly && cursorPly < base)) {
+            cursor = Position.unpack(snapshots.get(ply / interval));
+            cursorPly = base;
+            cursorBase = base;
+        }
+        while (cursorPly > ply) cursor.unmakeMove(moves[--cursorPly]);
+        while (cursorPly < ply) cursor.makeMove(moves[cursorPly++]);
+        return cursor;
+    }
+
+    public Position latest() {
+        return positionAt(size);
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    // Bucket i counts latencies in [2^(i-1), 2^i) milliseconds; bucket 0 is below 1 ms
+    public static final int BUCKETS = 20;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long millis = nanos / 1_000_000;
+        int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        counts[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    public long[] snapshot() {
+        long[] s = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) s[i] = counts[i].sum();
+        return s;
+    }
+
+    public long count() {
+        long n = 0;
+        for (LongAdder c : counts) n += c.sum();
+        return n;
+    }
+
+    public double meanMillis() {
+        long n = count();
+        return n == 0 ? 0.0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    // Upper bound of the bucket holding the given quantile, in milliseconds
+    public long percentileMillis(double quantile) {
+        long[] s = snapshot();
+        long total = 0;
+        for (long c : s) total += c;
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += s[i];
+            if (seen >= target) return 1L << i;
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    public static String[] bucketLabels() {
+        String[] labels = new String[BUCKETS];
+        labels[0] = "<1ms";
+        for (int i = 1; i < BUCKETS; i++) {
+            labels[i] = (i == BUCKETS - 1 ? ">=" : "<") + (1L << (i == BUCKETS - 1 ? i - 1 : i)) + "ms";
+        }
+        return labels;
+    }
+
+    public void reset() {
+        for (LongAdder c : counts) c.reset();
+        totalNanos.reset();
+    }
+}
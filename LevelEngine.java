@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The computer opponent of one game: a search run at a Difficulty and held to the game's CpuBudget.
+// Each move thinks for the smallest of the level's budget, the clock's hard limit and what the budget
+// holds, and its thread CPU time is charged to the budget afterwards.
+public class LevelEngine {
+    private final Difficulty level;
+    private final CpuBudget budget;
+    private final Search search;
+    private final Random random;
+
+    public LevelEngine(Difficulty level, CpuBudget budget, String gameId) {
+        this(level, budget, gameId, new Random());
+    }
+
+    public LevelEngine(Difficulty level, CpuBudget budget, String gameId, Random random) {
+        this.level = level;
+        this.budget = budget;
+        this.random = random;
+        this.search = new Search(new TranspositionTable(level.hashMb), EngineMetrics.get());
+        search.setGameId(gameId);
+        search.setEvalNoise(level.evalNoise, random.nextLong());
+        // Stored results are full strength, so weakened levels neither read nor feed the cache
+        if (level.fullStrength()) search.setCache(AnalysisCache.shared());
+    }
+
+    public Difficulty level() {
+        return level;
+    }
+
+    public CpuBudget budget() {
+        return budget;
+    }
+
+    public void stop() {
+        search.stop();
+    }
+
+    // time is the clock's budget for this move, or null without a clock
+    public Search.Result move(Position root, TimeManager time) {
+        if (time == null) time = TimeManager.fixed(level.millis);
+        long millis = Math.min(time.hardMillis(), budget.availableMillis());
+        if (level.nodes > 0) millis = Math.min(millis, level.millis);
+        Search.Limits limits = millis < 1 ? Search.Limits.nodes(CpuBudget.MIN_NODES)
+                : new Search.Limits(0, millis, level.nodes, time);
+
+        long cpuBefore = CpuBudget.threadCpuNanos();
+        try {
+            if (level.lines == 1) return search.search(root, limits);
+            Search.Line[][] last = new Search.Line[1][];
+            Search.Result r = search.analyze(root, limits, level.lines, 1, (depth, lines, nodes, nanos) -> last[0] = lines, null);
+            if (last[0] == null) return r;
+            Search.Line chosen = last[0][level.choose(last[0], random)];
+            return new Search.Result(chosen.pv[0], chosen.score, chosen.depth, r.nodes, r.nanos, chosen.pv);
+        } finally {
+            budget.charge(CpuBudget.threadCpuNanos() - cpuBefore);
+        }
+    }
+
+    // Hosting check: the given number of games share this JVM, each engine replying after a simulated
+    // opponent's think time, and the CPU each game used is compared with its ceiling.
+    // java LevelEngine <level> [games=8] [seconds=30] [share=0.1] [burstMillis=2000] [opponentMillis=1000]
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: java LevelEngine <Easy|Medium|Hard> [games] [seconds] [share] [burstMillis] [opponentMillis]");
+            System.exit(2);
+        }
+        Difficulty level = Difficulty.named(args[0]);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+        double share = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+        long burst = args.length > 4 ? Long.parseLong(args[4]) : 2000;
+        long opponentMillis = args.length > 5 ? Long.parseLong(args[5]) : 1000;
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        List<long[]> moveCpu = new ArrayList<>();
+        AtomicLong moves = new AtomicLong();
+        List<LevelEngine> engines = new ArrayList<>();
+        Thread[] threads = new Thread[games];
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            LevelEngine engine = new LevelEngine(level, new CpuBudget(share, burst), "bench-" + g, new Random(g));
+            engines.add(engine);
+            long[] costs = new long[100_000];
+            moveCpu.add(costs);
+            threads[g] = new Thread(() -> {
+                Random opponent = new Random();
+                int[] legal = new int[Position.MAX_MOVES];
+                Position pos = Position.fromFen(Position.START_FEN);
+                int count = 0;
+                while (System.nanoTime() < end && count < costs.length) {
+                    int n = pos.generateLegalMoves(legal);
+                    if (n == 0 || pos.halfmoveClock() >= 100 || pos.ply() >= 300) {
+                        pos = Position.fromFen(Position.START_FEN);
+                        continue;
+                    }
+                    pos.makeMove(legal[opponent.nextInt(n)]);
+                    try {
+                        Thread.sleep(opponentMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (!pos.hasAnyLegalMove()) continue;
+                    long before = engine.budget.usedNanos();
+                    Search.Result r = engine.move(pos.copy(), null);
+                    costs[count++] = engine.budget.usedNanos() - before;
+                    moves.incrementAndGet();
+                    if (r.bestMove != Move.NONE) pos.makeMove(r.bestMove);
+                }
+                costs[costs.length - 1] = count;
+            }, "game-" + g);
+            threads[g].start();
+        }
+        for (Thread t : threads) t.join();
+        for (int g = 0; g < games; g++) EngineMetrics.get().endGame("bench-" + g);
+        double wall = (System.nanoTime() - start) / 1e9;
+
+        long[] all = new long[(int) moves.get()];
+        int k = 0;
+        double worst = 0, total = 0;
+        for (int g = 0; g < games; g++) {
+            long[] costs = moveCpu.get(g);
+            int count = (int) costs[costs.length - 1];
+            for (int i = 0; i < count && k < all.length; i++) all[k++] = costs[i];
+            double used = engines.get(g).budget.usedNanos() / 1e9;
+            worst = Math.max(worst, used);
+            total += used;
+        }
+        Arrays.sort(all, 0, k);
+        System.out.printf("%s, %d games for %.1f s, share %.2f core, burst %d ms, opponent %d ms%n",
+                level, games, wall, share, burst, opponentMillis);
+        System.out.printf("%d engine moves; CPU per move ms: p50 %.1f  p99 %.1f  max %.1f%n", k,
+                k == 0 ? 0 : all[k / 2] / 1e6, k == 0 ? 0 : all[Math.min(k - 1, k * 99 / 100)] / 1e6, k == 0 ? 0 : all[k - 1] / 1e6);
+        System.out.printf("CPU per game: mean %.2f s, max %.2f s; ceiling %.2f s (share x wall + burst)%n",
+                total / games, worst, share * wall + burst / 1000.0);
+        System.out.printf("Whole run: %.2f cores, i.e. %.0f such games per core%n", total / wall,
+                total == 0 ? 0 : games * wall / total);
+    }
+}
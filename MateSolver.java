@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Proves forced mates with depth-first proof-number search (df-pn). The side to move is the attacker:
+// at its nodes (OR) one mating move suffices, at the defender's nodes (AND) every reply must lose.
+// Proof and disproof numbers estimate how many leaves are still needed either way, and the search
+// always expands the most-proving node, which follows narrow forcing lines far deeper than alpha-beta
+// at the same cost. Mate in 1, 2, ... maxMoves is tried in turn, so the first mate found is the
+// shortest. Results live in the solver's own table, sized by the memory limit; the remaining depth is
+// part of each key, so results for different bounds never mix. Repetitions count as failures for the
+// attacker, which can hide a mate but never invent one.
+public class MateSolver {
+    public static class Result {
+        public final int mateIn; // Moves, or 0 if none was found
+        public final int[] line; // Attacker's moves and the longest defence, starting at the root
+        public final long proofSize; // Nodes in the proof tree
+        public final long nodes;
+        public final long nanos;
+        public final boolean complete; // False if the node, time or cancel limit stopped the search
+
+        Result(int mateIn, int[] line, long proofSize, long nodes, long nanos, boolean complete) {
+            this.mateIn = mateIn;
+            this.line = line;
+            this.proofSize = proofSize;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.complete = complete;
+        }
+
+        public long nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+    }
+
+    private static final int INF = 1 << 30;
+    private static final int ENTRY_BYTES = 20;
+    private static final int MAX_PLIES = 2 * 32 - 1;
+    private static final long MAX_PROOF_WALK = 5_000_000; // Proof trees beyond this are counted no further
+    private static final long[] DEPTH_KEYS = new long[MAX_PLIES + 1];
+
+    static {
+        java.util.Random random = new java.util.Random(0xDF9_0001);
+        for (int i = 0; i < DEPTH_KEYS.length; i++) DEPTH_KEYS[i] = random.nextLong();
+    }
+
+    // Table: two-entry buckets of key, proof number, disproof number and the work (nodes) behind the
+    // entry; the entry with less work is replaced
+    private final long[] keys;
+    private final int[] proofs, disproofs, work;
+    private final int buckets;
+
+    private Position pos;
+    private final int[][] moves = new int[MAX_PLIES + 1][Position.MAX_MOVES];
+    private final int[][] childProofs = new int[MAX_PLIES + 1][Position.MAX_MOVES];
+    private final int[][] childDisproofs = new int[MAX_PLIES + 1][Position.MAX_MOVES];
+    private long nodes, nodeLimit, deadline, walked;
+    private AtomicBoolean cancel;
+    private boolean aborted;
+    private int lastProof, lastDisproof;
+
+    public MateSolver(int megabytes) {
+        buckets = (int) Math.min(1 << 26, Math.max(1L, (long) megabytes * 1024 * 1024 / (2 * ENTRY_BYTES)));
+        keys = new long[2 * buckets];
+        proofs = new int[2 * buckets];
+        disproofs = new int[2 * buckets];
+        work = new int[2 * buckets];
+    }
+
+    public double sizeMegabytes() {
+        return keys.length * (double) ENTRY_BYTES / (1024 * 1024);
+    }
+
+    // Shortest mate of at most maxMoves for the side to move, within the node and time limits (0 for
+    // none) or until cancel is set
+    public Result solve(Position root, int maxMoves, long maxNodes, long millis, AtomicBoolean cancel) {
+        long start = System.nanoTime();
+        pos = root.copy();
+        nodes = 0;
+        nodeLimit = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        deadline = millis > 0 ? start + millis * 1_000_000 : Long.MAX_VALUE;
+        this.cancel = cancel;
+        aborted = false;
+        java.util.Arrays.fill(keys, 0L);
+
+        for (int n = 1; n <= Math.min(maxMoves, (MAX_PLIES + 1) / 2) && !aborted; n++) {
+            int plies = 2 * n - 1;
+            mid(0, plies, INF, INF);
+            if (!aborted && lastProof == 0) {
+                walked = 0;
+                List<Integer> line = new ArrayList<>();
+                long size = proofSize(0, plies, line);
+                int[] pv = new int[line.size()];
+                for (int i = 0; i < pv.length; i++) pv[i] = line.get(i);
+                return new Result(n, pv, size, nodes, System.nanoTime() - start, !aborted);
+            }
+        }
+        return new Result(0, new int[0], 0, nodes, System.nanoTime() - start, !aborted);
+    }
+
+    // --- df-pn ---
+
+    // Expands the node until its proof number reaches thpn or its disproof number reaches thdn;
+    // leaves the node's numbers in lastProof and lastDisproof and in the table
+    private void mid(int ply, int remaining, int thpn, int thdn) {
+        nodes++;
+        if ((nodes & 1023) == 0 && (nodes >= nodeLimit || System.nanoTime() > deadline
+                || (cancel != null && cancel.get()))) {
+            aborted = true;
+        }
+        long key = pos.hash() ^ DEPTH_KEYS[remaining];
+        boolean or = (ply & 1) == 0;
+        int[] list = moves[ply];
+        int count = pos.generateLegalMoves(list);
+
+        if (count == 0) {
+            // Mate proves an AND node (the defender is mated); anything else, including stalemate, fails
+            boolean proven = !or && pos.inCheck();
+            setResult(key, proven ? 0 : INF, proven ? INF : 0, 0);
+            return;
+        }
+        if (remaining == 0 || (ply > 0 && (pos.isRepetition() || pos.halfmoveClock() >= 100))) {
+            setResult(key, INF, 0, 0);
+            return;
+        }
+
+        // Children's numbers are kept here while the node is expanded, so entries lost from the
+        // table cannot undo progress
+        int[] cps = childProofs[ply], cds = childDisproofs[ply];
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(list[i]);
+            int slot = probe(pos.hash() ^ DEPTH_KEYS[remaining - 1]);
+            pos.unmakeMove(list[i]);
+            cps[i] = slot < 0 ? 1 : proofs[slot];
+            cds[i] = slot < 0 ? 1 : disproofs[slot];
+        }
+
+        long startNodes = nodes;
+        while (true) {
+            // OR: proof = min over children, disproof = sum; AND the other way round
+            long sum = 0;
+            int best = -1, bestValue = INF + 1, secondValue = INF + 1;
+            for (int i = 0; i < count; i++) {
+                int value = or ? cps[i] : cds[i];
+                sum += or ? cds[i] : cps[i];
+                if (value < bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = i;
+                } else if (value < secondValue) {
+                    secondValue = value;
+                }
+            }
+            int summed = (int) Math.min(sum, INF);
+            int pn = or ? bestValue : summed;
+            int dn = or ? summed : bestValue;
+            if (pn >= thpn || dn >= thdn || aborted) {
+                setResult(key, pn, dn, nodes - startNodes);
+                return;
+            }
+            int childThpn, childThdn;
+            if (or) {
+                childThpn = Math.min(thpn, secondValue == INF + 1 ? INF : secondValue + 1);
+                childThdn = (int) Math.min(INF, (long) thdn - dn + cds[best]);
+            } else {
+                childThdn = Math.min(thdn, secondValue == INF + 1 ? INF : secondValue + 1);
+                childThpn = (int) Math.min(INF, (long) thpn - pn + cps[best]);
+            }
+            pos.makeMove(list[best]);
+            mid(ply + 1, remaining - 1, childThpn, childThdn);
+            pos.unmakeMove(list[best]);
+            cps[best] = lastProof;
+            cds[best] = lastDisproof;
+        }
+    }
+
+    private void setResult(long key, int pn, int dn, long spent) {
+        lastProof = pn;
+        lastDisproof = dn;
+        store(key, pn, dn, spent);
+    }
+
+    // --- Proof tree ---
+
+    // Size of the proof tree below a proven node. The line follows the attacker's first proven move
+    // and the defender's reply with the largest subtree, as the most stubborn defence.
+    private long proofSize(int ply, int remaining, List<Integer> line) {
+        if (++walked > MAX_PROOF_WALK) return 1;
+        long key = pos.hash() ^ DEPTH_KEYS[remaining];
+        int slot = probe(key);
+        if (slot < 0 || proofs[slot] != 0) {
+            mid(ply, remaining, INF, INF); // Overwritten since; prove it again
+            if (lastProof != 0) return 1;
+        }
+        int[] list = new int[Position.MAX_MOVES];
+        int count = pos.generateLegalMoves(list);
+        if (count == 0) return 1;
+        boolean or = (ply & 1) == 0;
+        long size = 1;
+        long bestChild = -1;
+        List<Integer> bestLine = null;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(list[i]);
+            long childKey = pos.hash() ^ DEPTH_KEYS[remaining - 1];
+            int childSlot = probe(childKey);
+            if (or && (childSlot < 0 || proofs[childSlot] != 0)) {
+                pos.unmakeMove(list[i]);
+                continue;
+            }
+            List<Integer> childLine = new ArrayList<>();
+            long childSize = proofSize(ply + 1, remaining - 1, childLine);
+            pos.unmakeMove(list[i]);
+            if (childSize > bestChild) {
+                bestChild = childSize;
+                bestLine = childLine;
+                bestLine.add(0, list[i]);
+            }
+            size += childSize;
+            if (or) break;
+        }
+        if (bestLine == null && or) {
+            // The proven child was overwritten; find it by searching each move again
+            for (int i = 0; i < count && bestLine == null; i++) {
+                pos.makeMove(list[i]);
+                mid(ply + 1, remaining - 1, INF, INF);
+                if (lastProof == 0) {
+                    bestLine = new ArrayList<>();
+                    size += proofSize(ply + 1, remaining - 1, bestLine);
+                    bestLine.add(0, list[i]);
+                }
+                pos.unmakeMove(list[i]);
+            }
+        }
+        if (bestLine != null) line.addAll(bestLine);
+        return size;
+    }
+
+    // --- Table ---
+
+    private int probe(long key) {
+        int b = (int) Long.remainderUnsigned(key, buckets) * 2;
+        if (keys[b] == key) return b;
+        if (keys[b + 1] == key) return b + 1;
+        return -1;
+    }
+
+    private void store(long key, int pn, int dn, long spent) {
+        int b = (int) Long.remainderUnsigned(key, buckets) * 2;
+        int slot = keys[b] == key ? b : keys[b + 1] == key ? b + 1 : work[b] <= work[b + 1] ? b : b + 1;
+        keys[slot] = key;
+        proofs[slot] = pn;
+        disproofs[slot] = dn;
+        work[slot] = (int) Math.min(Integer.MAX_VALUE, spent);
+    }
+
+    // java MateSolver "<fen>" [maxMoves=10] [memoryMb=64] [seconds=60]
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: java MateSolver \"<fen>\" [maxMoves] [memoryMb] [seconds]");
+            System.exit(2);
+        }
+        Position pos = Position.fromFen(args[0]);
+        int maxMoves = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 60;
+        MateSolver solver = new MateSolver(megabytes);
+        Result r = solver.solve(pos, maxMoves, 0, seconds * 1000, null);
+        if (r.mateIn > 0) {
+            System.out.println("Mate in " + r.mateIn + ": " + formatLine(pos, r.line));
+        } else {
+            System.out.println(r.complete ? "No mate in " + maxMoves + " or fewer" : "No mate found before the limit");
+        }
+        System.out.printf("proof %d nodes, %d nodes searched in %.2f s (%d nodes/s), table %.1f MB%n",
+                r.proofSize, r.nodes, r.nanos / 1e9, r.nodesPerSecond(), solver.sizeMegabytes());
+    }
+
+    // The line in SAN with move numbers
+    public static String formatLine(Position root, int[] line) {
+        Position p = root.copy();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.length; i++) {
+            boolean white = p.sideToMove() == Position.WHITE;
+            if (white || i == 0) sb.append(p.fullmoveNumber()).append(white ? ". " : "... ");
+            sb.append(Pgn.toSan(p, line[i])).append(' ');
+            p.makeMove(line[i]);
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,58 @@
+public final class Move {
+    // Layout: bits 0-5 from square, 6-11 to square, 12-14 promotion piece type, 15-16 special flags.
+    // Squares are indexed row * 8 + col, row 0 being Black's back rank, matching the UI board.
+    public static final int NONE = 0;
+    public static final int FLAG_EN_PASSANT = 1 << 15;
+    public static final int FLAG_CASTLE = 1 << 16;
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & FLAG_EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return (move & FLAG_CASTLE) != 0;
+    }
+
+    public static String squareName(int sq) {
+        return "" + (char) ('a' + (sq & 7)) + (char) ('8' - (sq >>> 3));
+    }
+
+    public static int parseSquare(String name) {
+        int col = name.charAt(0) - 'a';
+        int row = '8' - name.charAt(1);
+        if (col < 0 || col > 7 || row < 0 || row > 7) throw new IllegalArgumentException("Bad square: " + name);
+        return row * 8 + col;
+    }
+
+    // Long algebraic (UCI) notation, e.g. "e2e4" or "e7e8q".
+    public static String toUci(int move) {
+        if (move == NONE) return "0000";
+        String s = squareName(from(move)) + squareName(to(move));
+        int promo = promotion(move);
+        if (promo != 0) s += " pnbrqk".charAt(promo);
+        return s;
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Efficiently updatable network: 768 piece-square inputs per perspective feed an int16 accumulator of
+// `hidden` units that Position updates incrementally in makeMove; unmakeMove just pops the stack. The
+// two perspectives (side to move first) go through clipped ReLU into a float dense layer and a scalar
+// output. Dense and accumulator kernels use the Vector API (simd/NnueSimd.java) when it is built and
+// jdk.incubator.vector is present. The dense layer stays float rather than quantized int16: without a
+// trained network there is no way to check the quantization error, and the file format would change.
+public final class Nnue {
+    public static final int MAGIC = 0x4555_4E4E; // "NNUE" little-endian
+    public static final int VERSION = 1;
+    public static final int INPUTS = 768;
+    public static final int QA = 255; // Accumulator fixed-point scale: 1.0 == QA
+
+    public interface Kernels {
+        void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n);
+
+        void sub(short[] acc, int accOffset, short[] weights, int weightOffset, int n);
+
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int n);
+    }
+
+    static final class ScalarKernels implements Kernels {
+        @Override
+        public void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+            for (int i = 0; i < n; i++) acc[accOffset + i] += weights[weightOffset + i];
+        }
+
+        @Override
+        public void sub(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+            for (int i = 0; i < n; i++) acc[accOffset + i] -= weights[weightOffset + i];
+        }
+
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int n) {
+            float sum = 0f;
+            for (int i = 0; i < n; i++) sum += a[aOffset + i] * b[bOffset + i];
+            return sum;
+        }
+    }
+
+    static final Kernels KERNELS = selectKernels();
+
+    private static volatile Nnue defaultNetwork;
+    private static volatile boolean defaultLoaded;
+
+    final int hidden;
+    final int l1;
+    final float outputScale; // Engine score units per unit of network output
+    final short[] ftWeights; // [INPUTS][hidden]
+    final short[] ftBias; // [hidden]
+    final float[] l1Weights; // [l1][2 * hidden]
+    final float[] l1Bias; // [l1]
+    final float[] outWeights; // [l1]
+    float outBias;
+
+    public Nnue(int hidden, int l1, float outputScale) {
+        this.hidden = hidden;
+        this.l1 = l1;
+        this.outputScale = outputScale;
+        ftWeights = new short[INPUTS * hidden];
+        ftBias = new short[hidden];
+        l1Weights = new float[l1 * 2 * hidden];
+        l1Bias = new float[l1];
+        outWeights = new float[l1];
+    }
+
+    private static Kernels selectKernels() {
+        if (!Boolean.getBoolean("chess.nnue.scalar") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("NnueSimd").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall through to the scalar kernels
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    public static String kernelName() {
+        return KERNELS.getClass().getSimpleName();
+    }
+
+    // Network named by -Dchess.nnue (default chess.nnue in the working directory); null if there is none,
+    // in which case Evaluation keeps using the classical evaluation
+    public static Nnue get() {
+        if (!defaultLoaded) {
+            synchronized (Nnue.class) {
+                if (!defaultLoaded) {
+                    Path path = Paths.get(System.getProperty("chess.nnue", "chess.nnue"));
+                    if (Files.isRegularFile(path)) {
+                        try {
+                            defaultNetwork = load(path);
+                        } catch (IOException | IllegalArgumentException e) {
+                            System.err.println("Could not load network " + path + ": " + e.getMessage());
+                        }
+                    }
+                    defaultLoaded = true;
+                }
+            }
+        }
+        return defaultNetwork;
+    }
+
+    // --- File format ---
+    // Little-endian: magic, version, hidden, l1 (int32), outputScale (float32), feature weights and
+    // biases (int16, QA scale), then dense weights and biases (float32).
+
+    public static Nnue load(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // Keep reading until the whole file is in memory
+            }
+            buf.flip();
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) throw new IllegalArgumentException("Not a network file");
+            int hidden = buf.getInt(), l1 = buf.getInt();
+            long expected = 20L + 2L * (INPUTS * (long) hidden + hidden) + 4L * (l1 * 2L * hidden + l1 + l1 + 1);
+            if (hidden <= 0 || l1 <= 0 || buf.capacity() != expected) throw new IllegalArgumentException("Truncated network file");
+            Nnue net = new Nnue(hidden, l1, buf.getFloat());
+            buf.asShortBuffer().get(net.ftWeights);
+            buf.position(buf.position() + 2 * net.ftWeights.length);
+            buf.asShortBuffer().get(net.ftBias);
+            buf.position(buf.position() + 2 * net.ftBias.length);
+            buf.asFloatBuffer().get(net.l1Weights);
+            buf.position(buf.position() + 4 * net.l1Weights.length);
+            buf.asFloatBuffer().get(net.l1Bias);
+            buf.position(buf.position() + 4 * net.l1Bias.length);
+            buf.asFloatBuffer().get(net.outWeights);
+            buf.position(buf.position() + 4 * net.outWeights.length);
+            net.outBias = buf.getFloat();
+            return net;
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        int size = 20 + 2 * (ftWeights.length + ftBias.length) + 4 * (l1Weights.length + l1Bias.length + outWeights.length + 1);
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(hidden).putInt(l1).putFloat(outputScale);
+        for (short w : ftWeights) buf.putShort(w);
+        for (short b : ftBias) buf.putShort(b);
+        for (float w : l1Weights) buf.putFloat(w);
+        for (float b : l1Bias) buf.putFloat(b);
+        for (float w : outWeights) buf.putFloat(w);
+        buf.putFloat(outBias);
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    // Small random weights; a starting point for training and for exercising the code paths
+    public static Nnue random(int hidden, int l1, long seed) {
+        java.util.Random rand = new java.util.Random(seed);
+        Nnue net = new Nnue(hidden, l1, 100f);
+        for (int i = 0; i < net.ftWeights.length; i++) net.ftWeights[i] = (short) (rand.nextGaussian() * 8);
+        for (int i = 0; i < hidden; i++) net.ftBias[i] = (short) (QA / 4 + rand.nextGaussian() * 8);
+        for (int i = 0; i < net.l1Weights.length; i++) net.l1Weights[i] = (float) (rand.nextGaussian() / Math.sqrt(2 * hidden));
+        for (int i = 0; i < l1; i++) net.outWeights[i] = (float) (rand.nextGaussian() / Math.sqrt(l1));
+        return net;
+    }
+
+    static int featureIndex(int perspective, int piece, int sq) {
+        int relative = Position.colorOf(piece) == perspective ? 0 : 6;
+        int square = perspective == Position.WHITE ? sq : sq ^ 56;
+        return (relative + Position.typeOf(piece) - 1) * 64 + square;
+    }
+
+    // --- Accumulator ---
+
+    public static final class Accumulator {
+        private final Nnue net;
+        private final int h;
+        private short[][] stack = new short[64][];
+        private int top;
+        private final float[] input;
+        private final float[] hiddenOut;
+
+        public Accumulator(Nnue net) {
+            this.net = net;
+            this.h = net.hidden;
+            for (int i = 0; i < stack.length; i++) stack[i] = new short[2 * h];
+            input = new float[2 * h];
+            hiddenOut = new float[net.l1];
+        }
+
+        public Nnue network() {
+            return net;
+        }
+
+        // Full rebuild from the board; White's perspective lives in [0, h), Black's in [h, 2h)
+        public void refresh(Position pos) {
+            top = 0;
+            short[] acc = stack[0];
+            System.arraycopy(net.ftBias, 0, acc, 0, h);
+            System.arraycopy(net.ftBias, 0, acc, h, h);
+            for (int sq = 0; sq < 64; sq++) {
+                int p = pos.pieceAt(sq);
+                if (p != 0) add(p, sq);
+            }
+        }
+
+        void push() {
+            if (top + 1 == stack.length) {
+                stack = java.util.Arrays.copyOf(stack, stack.length * 2);
+                for (int i = top + 1; i < stack.length; i++) stack[i] = new short[2 * h];
+            }
+            System.arraycopy(stack[top], 0, stack[top + 1], 0, 2 * h);
+            top++;
+        }
+
+        void pop() {
+            top--;
+        }
+
+        void add(int piece, int sq) {
+            short[] acc = stack[top];
+            KERNELS.add(acc, 0, net.ftWeights, featureIndex(Position.WHITE, piece, sq) * h, h);
+            KERNELS.add(acc, h, net.ftWeights, featureIndex(Position.BLACK, piece, sq) * h, h);
+        }
+
+        void remove(int piece, int sq) {
+            short[] acc = stack[top];
+            KERNELS.sub(acc, 0, net.ftWeights, featureIndex(Position.WHITE, piece, sq) * h, h);
+            KERNELS.sub(acc, h, net.ftWeights, featureIndex(Position.BLACK, piece, sq) * h, h);
+        }
+
+        // Score in engine units from the side to move's point of view
+        public int evaluate(int sideToMove) {
+            short[] acc = stack[top];
+            int usOffset = sideToMove == Position.WHITE ? 0 : h;
+            int themOffset = h - usOffset;
+            float scale = 1f / QA;
+            for (int i = 0; i < h; i++) {
+                input[i] = Math.max(0, Math.min(QA, acc[usOffset + i])) * scale;
+                input[h + i] = Math.max(0, Math.min(QA, acc[themOffset + i])) * scale;
+            }
+            int width = 2 * h;
+            for (int j = 0; j < net.l1; j++) {
+                float v = KERNELS.dot(net.l1Weights, j * width, input, 0, width) + net.l1Bias[j];
+                hiddenOut[j] = Math.max(0f, Math.min(1f, v));
+            }
+            float out = KERNELS.dot(net.outWeights, 0, hiddenOut, 0, net.l1) + net.outBias;
+            return Math.round(out * net.outputScale);
+        }
+    }
+}
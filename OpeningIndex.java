@@ -0,0 +1,433 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Opening explorer index: for every position reached in a PGN archive, the moves played from it with
+// White wins, draws and Black wins. Entries are sorted by (Zobrist hash, move) and stored in blocks of
+// delta- and varint-coded entries; a hash never spans two blocks. A table of each block's first hash
+// and offset sits at the end of the file. Lookups memory-map the file, binary-search that table and
+// decode a single block.
+//
+// Building is an external sort: (hash, move, result) records are sorted and merged in memory-sized runs,
+// then the runs are merged into the final file, so archives larger than memory work.
+public class OpeningIndex implements Closeable {
+    private static final int MAGIC = 0x5844_494F; // "OIDX" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int BLOCK_ENTRIES = 128;
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final long SEGMENT_OVERLAP = 1L << 20; // More than any block, so blocks never straddle segments
+
+    public static class MoveStats {
+        public final int move;
+        public final long whiteWins;
+        public final long draws;
+        public final long blackWins;
+
+        MoveStats(int move, long whiteWins, long draws, long blackWins) {
+            this.move = move;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        public long games() {
+            return whiteWins + draws + blackWins;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long entries;
+    private final int blocks;
+    private final long tableOffset;
+
+    private OpeningIndex(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        int count = (int) ((size + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        segments = new MappedByteBuffer[Math.max(1, count)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * SEGMENT_BYTES;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, SEGMENT_BYTES + SEGMENT_OVERLAP));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer header = segments[0];
+        if (size < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not an opening index");
+        }
+        entries = header.getLong(8);
+        blocks = header.getInt(16);
+        tableOffset = header.getLong(24);
+    }
+
+    public static OpeningIndex open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new OpeningIndex(ch);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public long entryCount() {
+        return entries;
+    }
+
+    // Moves played from the position with this hash, most popular first
+    public List<MoveStats> lookup(long hash) {
+        List<MoveStats> found = new ArrayList<>();
+        int lo = 0, hi = blocks - 1, block = -1;
+        while (lo <= hi) { // Last block whose first hash is <= hash
+            int mid = (lo + hi) >>> 1;
+            if (Long.compare(tableLong(mid, 0), hash) <= 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0) return found;
+
+        long offset = tableLong(block, 8);
+        ByteBuffer seg = segments[(int) (offset / SEGMENT_BYTES)];
+        int[] pos = {(int) (offset % SEGMENT_BYTES)};
+        int n = (int) readVarint(seg, pos);
+        long h = 0;
+        for (int i = 0; i < n; i++) {
+            h += readVarint(seg, pos);
+            int move = (int) readVarint(seg, pos);
+            long w = readVarint(seg, pos), d = readVarint(seg, pos), l = readVarint(seg, pos);
+            if (h == hash) found.add(new MoveStats(move, w, d, l));
+            else if (Long.compare(h, hash) > 0) break;
+        }
+        found.sort((a, b) -> Long.compare(b.games(), a.games()));
+        return found;
+    }
+
+    private long tableLong(int block, int field) {
+        long at = tableOffset + block * 16L + field;
+        return segments[(int) (at / SEGMENT_BYTES)].getLong((int) (at % SEGMENT_BYTES));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // --- Building ---
+
+    public static class Builder {
+        private final Path output;
+        private final int maxPlies;
+        private final int runRecords;
+        private final long[] hashes;
+        private final long[] values; // move << 2 | result half points
+        private int buffered;
+        private final List<Path> runs = new ArrayList<>();
+        private long games, skipped;
+
+        // maxPlies limits how deep into each game positions are indexed; runRecords bounds memory
+        // (16 bytes per record)
+        public Builder(Path output, int maxPlies, int runRecords) {
+            this.output = output;
+            this.maxPlies = maxPlies;
+            this.runRecords = runRecords;
+            this.hashes = new long[runRecords];
+            this.values = new long[runRecords];
+        }
+
+        public void addPgn(Path pgn) throws IOException {
+            try (Pgn.Reader reader = new Pgn.Reader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+                Pgn.Game game;
+                while ((game = reader.next()) != null) {
+                    try {
+                        addGame(game);
+                    } catch (IllegalArgumentException e) {
+                        skipped++;
+                    }
+                }
+            }
+        }
+
+        public void addGame(Pgn.Game game) throws IOException {
+            int result = game.whiteHalfPoints();
+            if (result < 0 || game.error != null) {
+                skipped++;
+                return;
+            }
+            Position pos = Position.fromFen(game.startFen);
+            for (int i = 0; i < game.moves.length && i < maxPlies; i++) {
+                if (buffered == runRecords) spill();
+                hashes[buffered] = pos.hash();
+                values[buffered++] = ((long) game.moves[i] << 2) | result;
+                pos.makeMove(game.moves[i]);
+            }
+            games++;
+        }
+
+        public long games() {
+            return games;
+        }
+
+        public long skipped() {
+            return skipped;
+        }
+
+        // Sorts and aggregates the buffer into a run file of (hash, move, white, draws, black) records
+        private void spill() throws IOException {
+            sort(hashes, values, 0, buffered - 1);
+            Path run = Files.createTempFile(output.toAbsolutePath().getParent(), "oidx-run", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                int i = 0;
+                while (i < buffered) {
+                    long hash = hashes[i];
+                    long move = values[i] >>> 2;
+                    long white = 0, draws = 0, black = 0;
+                    for (; i < buffered && hashes[i] == hash && values[i] >>> 2 == move; i++) {
+                        int result = (int) (values[i] & 3);
+                        if (result == 2) white++;
+                        else if (result == 1) draws++;
+                        else black++;
+                    }
+                    out.writeLong(hash);
+                    out.writeInt((int) move);
+                    out.writeLong(white);
+                    out.writeLong(draws);
+                    out.writeLong(black);
+                }
+            }
+            runs.add(run);
+            buffered = 0;
+        }
+
+        // Merges all runs into the index file and deletes them
+        public void finish() throws IOException {
+            if (buffered > 0 || runs.isEmpty()) spill();
+            PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> a.hash != b.hash
+                    ? Long.compare(a.hash, b.hash) : Integer.compare(a.move, b.move));
+            for (Path run : runs) {
+                RunReader r = new RunReader(run);
+                if (r.advance()) queue.add(r);
+            }
+
+            BlockWriter writer = new BlockWriter(output);
+            try {
+                while (!queue.isEmpty()) {
+                    RunReader r = queue.poll();
+                    long hash = r.hash;
+                    int move = r.move;
+                    long w = 0, d = 0, l = 0;
+                    while (true) {
+                        w += r.white;
+                        d += r.draws;
+                        l += r.black;
+                        if (r.advance()) queue.add(r);
+                        else r.close();
+                        RunReader next = queue.peek();
+                        if (next == null || next.hash != hash || next.move != move) break;
+                        r = queue.poll();
+                    }
+                    writer.add(hash, move, w, d, l);
+                }
+                writer.finish();
+            } finally {
+                for (RunReader r : queue) r.close();
+                for (Path run : runs) Files.deleteIfExists(run);
+                runs.clear();
+            }
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        long hash;
+        int move;
+        long white, draws, black;
+
+        RunReader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                hash = in.readLong();
+                move = in.readInt();
+                white = in.readLong();
+                draws = in.readLong();
+                black = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Writes blocks, then the block table, then fills in the header
+    private static final class BlockWriter {
+        private final Path file;
+        private final OutputStream out;
+        private final java.io.ByteArrayOutputStream block = new java.io.ByteArrayOutputStream();
+        private long[] table = new long[2 * 1024]; // First hash and offset per block
+        private int blockCount;
+        private long offset = HEADER_BYTES;
+        private long entries;
+        private int blockEntries;
+        private long blockFirst, lastHash;
+
+        BlockWriter(Path file) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        void add(long hash, int move, long w, long d, long l) throws IOException {
+            // Close the block once full, but never between two entries of the same position
+            if (blockEntries >= BLOCK_ENTRIES && hash != lastHash) flushBlock();
+            if (blockEntries == 0) {
+                blockFirst = hash;
+                lastHash = 0;
+            }
+            writeVarint(block, hash - lastHash);
+            writeVarint(block, move);
+            writeVarint(block, w);
+            writeVarint(block, d);
+            writeVarint(block, l);
+            lastHash = hash;
+            blockEntries++;
+            entries++;
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockEntries == 0) return;
+            java.io.ByteArrayOutputStream count = new java.io.ByteArrayOutputStream();
+            writeVarint(count, blockEntries);
+            if (2 * blockCount == table.length) table = java.util.Arrays.copyOf(table, table.length * 2);
+            table[2 * blockCount] = blockFirst;
+            table[2 * blockCount++ + 1] = offset;
+            count.writeTo(out);
+            block.writeTo(out);
+            offset += count.size() + block.size();
+            block.reset();
+            blockEntries = 0;
+        }
+
+        void finish() throws IOException {
+            flushBlock();
+            long tableOffset = offset;
+            ByteBuffer buf = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < blockCount; i++) {
+                buf.clear();
+                buf.putLong(table[2 * i]).putLong(table[2 * i + 1]);
+                out.write(buf.array());
+            }
+            out.close();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(entries).putInt(blockCount).putInt(0).putLong(tableOffset);
+            header.flip();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.write(header, 0);
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    private static void writeVarint(java.io.ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer buf, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get(pos[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+            shift += 7;
+        }
+    }
+
+    // Quicksort of parallel arrays by (hashes, values)
+    private static void sort(long[] keys, long[] vals, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pk = keys[mid], pv = vals[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (compare(keys[i], vals[i], pk, pv) < 0) i++;
+                while (compare(keys[j], vals[j], pk, pv) > 0) j--;
+                if (i <= j) {
+                    swap(keys, vals, i++, j--);
+                }
+            }
+            // Recurse into the smaller half to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(keys, vals, lo, j);
+                lo = i;
+            } else {
+                sort(keys, vals, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(keys[j - 1], vals[j - 1], keys[j], vals[j]) > 0; j--) swap(keys, vals, j, j - 1);
+        }
+    }
+
+    private static int compare(long k1, long v1, long k2, long v2) {
+        return k1 != k2 ? Long.compare(k1, k2) : Long.compare(v1, v2);
+    }
+
+    private static void swap(long[] keys, long[] vals, int a, int b) {
+        long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        long v = vals[a];
+        vals[a] = vals[b];
+        vals[b] = v;
+    }
+
+    // java OpeningIndex <index> <games.pgn>... [builds the index; maxPlies via -Dplies, default 40]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: java OpeningIndex <index> <games.pgn>...");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        Builder builder = new Builder(Paths.get(args[0]), Integer.getInteger("plies", 40), 8 << 20);
+        for (int i = 1; i < args.length; i++) builder.addPgn(Paths.get(args[i]));
+        builder.finish();
+        try (OpeningIndex index = open(Paths.get(args[0]))) {
+            System.out.printf("%d games (%d skipped), %d entries in %.1f s%n", builder.games(), builder.skipped(),
+                    index.entryCount(), (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// PGN reading and SAN conversion on top of Position. Reader streams games one at a time, so archives of
+// any size can be replayed; comments, NAGs and variations are skipped.
+public final class Pgn {
+    private Pgn() {
+    }
+
+    public static class Game {
+        public final Map<String, String> tags;
+        public final String startFen;
+        public final int[] moves;
+        public final String result; // 1-0, 0-1, 1/2-1/2 or *
+        public final String error; // First unparsable move, or null; moves stops before it
+
+        Game(Map<String, String> tags, String startFen, int[] moves, String result, String error) {
+            this.tags = tags;
+            this.startFen = startFen;
+            this.moves = moves;
+            this.result = result;
+            this.error = error;
+        }
+
+        // Result in half points for White, or -1 if unfinished
+        public int whiteHalfPoints() {
+            switch (result) {
+                case "1-0": return 2;
+                case "1/2-1/2": return 1;
+                case "0-1": return 0;
+                default: return -1;
+            }
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final PushbackReader in;
+
+        public Reader(java.io.Reader in) {
+            this.in = new PushbackReader(in, 1);
+        }
+
+        // The next game, or null at end of input
+        public Game next() throws IOException {
+            Map<String, String> tags = new LinkedHashMap<>();
+            Position pos = null;
+            String startFen = Position.START_FEN;
+            int[] moves = new int[128];
+            int count = 0;
+            String error = null;
+            int depth = 0;
+            boolean inMoves = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (Character.isWhitespace(c)) continue;
+                if (c == '[' && depth == 0) {
+                    if (inMoves) { // Next game started without a result token
+                        in.unread(c);
+                        break;
+                    }
+                    readTag(tags);
+                } else if (c == '{') {
+                    skipUntil('}');
+                } else if (c == ';' || c == '%') {
+                    skipUntil('\n');
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth = Math.max(0, depth - 1);
+                } else if (c == '$') {
+                    readSymbol(c);
+                } else {
+                    String token = readSymbol(c);
+                    if (depth > 0) continue;
+                    if (!inMoves) {
+                        inMoves = true;
+                        startFen = tags.getOrDefault("FEN", Position.START_FEN);
+                        try {
+                            pos = Position.fromFen(startFen);
+                        } catch (RuntimeException e) {
+                            error = "FEN " + startFen;
+                        }
+                    }
+                    if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                        return new Game(tags, startFen, java.util.Arrays.copyOf(moves, count), token, error);
+                    }
+                    int dot = token.lastIndexOf('.');
+                    if (dot >= 0) token = token.substring(dot + 1);
+                    if (token.isEmpty() || error != null) continue;
+                    int move = parseSan(pos, token);
+                    if (move == Move.NONE) {
+                        error = token;
+                        continue;
+                    }
+                    if (count == moves.length) moves = java.util.Arrays.copyOf(moves, count * 2);
+                    moves[count++] = move;
+                    pos.makeMove(move);
+                }
+            }
+            if (!inMoves && tags.isEmpty()) return null;
+            String result = tags.getOrDefault("Result", "*");
+            return new Game(tags, startFen, java.util.Arrays.copyOf(moves, count), result, error);
+        }
+
+        private void readTag(Map<String, String> tags) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            boolean quoted = false;
+            while ((c = in.read()) != -1 && (quoted || c != ']')) {
+                if (c == '"') quoted = !quoted;
+                if (c == '\\' && quoted) c = in.read();
+                sb.append((char) c);
+            }
+            String tag = sb.toString().trim();
+            int space = tag.indexOf(' ');
+            if (space < 0) return;
+            String value = tag.substring(space + 1).trim();
+            if (value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2) {
+                value = value.substring(1, value.length() - 1);
+            }
+            tags.put(tag.substring(0, space), value);
+        }
+
+        private void skipUntil(int end) throws IOException {
+            int c;
+            while ((c = in.read()) != -1 && c != end) {
+                // Skip
+            }
+        }
+
+        private String readSymbol(int first) throws IOException {
+            StringBuilder sb = new StringBuilder().append((char) first);
+            int c;
+            while ((c = in.read()) != -1) {
+                if (Character.isWhitespace(c) || "{}();[".indexOf(c) >= 0) {
+                    in.unread(c);
+                    break;
+                }
+                sb.append((char) c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // --- SAN ---
+
+    // The legal move the SAN names, or Move.NONE if it names none or several
+    public static int parseSan(Position pos, String san) {
+        String s = san;
+        while (!s.isEmpty() && "+#!?".indexOf(s.charAt(s.length() - 1)) >= 0) s = s.substring(0, s.length() - 1);
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(moves);
+
+        if (s.equals("O-O") || s.equals("0-0") || s.equals("O-O-O") || s.equals("0-0-0")) {
+            boolean kingside = s.length() == 3;
+            for (int i = 0; i < n; i++) {
+                int m = moves[i];
+                if (Move.isCastle(m) && (Move.to(m) > Move.from(m)) == kingside) return m;
+            }
+            return Move.NONE;
+        }
+
+        int type = Position.PAWN;
+        if (!s.isEmpty() && "NBRQK".indexOf(s.charAt(0)) >= 0) {
+            type = "PNBRQK".indexOf(s.charAt(0)) + 1;
+            s = s.substring(1);
+        }
+        int promotion = 0;
+        int eq = s.indexOf('=');
+        if (eq >= 0 && eq + 1 < s.length()) {
+            promotion = "PNBRQK".indexOf(Character.toUpperCase(s.charAt(eq + 1))) + 1;
+            s = s.substring(0, eq);
+        } else if (type == Position.PAWN && !s.isEmpty() && "NBRQ".indexOf(s.charAt(s.length() - 1)) >= 0) {
+            promotion = "PNBRQK".indexOf(s.charAt(s.length() - 1)) + 1;
+            s = s.substring(0, s.length() - 1);
+        }
+        s = s.replace("x", "").replace("-", "");
+        if (s.length() < 2) return Move.NONE;
+        int to;
+        try {
+            to = Move.parseSquare(s.substring(s.length() - 2));
+        } catch (IllegalArgumentException e) {
+            return Move.NONE;
+        }
+        String from = s.substring(0, s.length() - 2);
+        int fromFile = -1, fromRow = -1;
+        for (char ch : from.toCharArray()) {
+            if (ch >= 'a' && ch <= 'h') fromFile = ch - 'a';
+            else if (ch >= '1' && ch <= '8') fromRow = '8' - ch;
+            else return Move.NONE;
+        }
+
+        int found = Move.NONE;
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            int f = Move.from(m);
+            if (Move.to(m) != to || Position.typeOf(pos.pieceAt(f)) != type || Move.promotion(m) != promotion) continue;
+            if ((fromFile >= 0 && (f & 7) != fromFile) || (fromRow >= 0 && (f >>> 3) != fromRow)) continue;
+            if (found != Move.NONE) return Move.NONE; // Ambiguous
+            found = m;
+        }
+        return found;
+    }
+
+    public static String toSan(Position pos, int move) {
+        int from = Move.from(move), to = Move.to(move);
+        int type = Position.typeOf(pos.pieceAt(from));
+        boolean capture = pos.pieceAt(to) != 0 || Move.isEnPassant(move);
+        StringBuilder sb = new StringBuilder();
+        if (Move.isCastle(move)) {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        } else if (type == Position.PAWN) {
+            if (capture) sb.append((char) ('a' + (from & 7))).append('x');
+            sb.append(Move.squareName(to));
+            if (Move.promotion(move) != 0) sb.append('=').append("PNBRQK".charAt(Move.promotion(move) - 1));
+        } else {
+            sb.append("PNBRQK".charAt(type - 1));
+            int[] moves = new int[Position.MAX_MOVES];
+            int n = pos.generateLegalMoves(moves);
+            boolean ambiguous = false, sameFile = false, sameRow = false;
+            for (int i = 0; i < n; i++) {
+                int other = Move.from(moves[i]);
+                if (other == from || Move.to(moves[i]) != to || pos.pieceAt(other) != pos.pieceAt(from)) continue;
+                ambiguous = true;
+                if ((other & 7) == (from & 7)) sameFile = true;
+                if ((other >>> 3) == (from >>> 3)) sameRow = true;
+            }
+            if (ambiguous) {
+                if (!sameFile) sb.append((char) ('a' + (from & 7)));
+                else if (!sameRow) sb.append((char) ('8' - (from >>> 3)));
+                else sb.append(Move.squareName(from));
+            }
+            if (capture) sb.append('x');
+            sb.append(Move.squareName(to));
+        }
+        pos.makeMove(move);
+        if (pos.inCheck()) sb.append(pos.hasAnyLegalMove() ? '+' : '#');
+        pos.unmakeMove(move);
+        return sb.toString();
+    }
+
+    // --- Writing ---
+
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_WIDTH = 79;
+
+    // One game in export format: the seven tag roster first ("?" where missing), then the other tags,
+    // then the movetext wrapped at LINE_WIDTH. annotations, if given, holds text to write after each
+    // move (glyphs and {comments}); a move after a comment repeats its number, as the standard asks.
+    public static String write(Map<String, String> tags, String startFen, int[] moves, String[] annotations, String result) {
+        Map<String, String> all = new LinkedHashMap<>();
+        for (String name : SEVEN_TAG_ROSTER) all.put(name, tags.getOrDefault(name, "?"));
+        all.putAll(tags);
+        all.put("Result", result);
+        if (!startFen.equals(Position.START_FEN)) {
+            all.put("SetUp", "1");
+            all.put("FEN", startFen);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> tag : all.entrySet()) {
+            String value = tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"");
+            sb.append('[').append(tag.getKey()).append(" \"").append(value).append("\"]\n");
+        }
+        sb.append('\n');
+
+        Position pos = Position.fromFen(startFen);
+        StringBuilder line = new StringBuilder();
+        boolean needNumber = true;
+        for (int i = 0; i < moves.length; i++) {
+            boolean white = pos.sideToMove() == Position.WHITE;
+            String san = toSan(pos, moves[i]);
+            appendWrapped(sb, line, white || needNumber ? pos.fullmoveNumber() + (white ? ". " : "... ") + san : san);
+            String annotation = annotations == null ? null : annotations[i];
+            if (annotation != null && !annotation.isEmpty()) {
+                for (String word : annotation.split(" (?![^\\[]*\\])")) appendWrapped(sb, line, word); // [%cmd x] stays whole
+            }
+            needNumber = annotation != null && annotation.indexOf('{') >= 0;
+            pos.makeMove(moves[i]);
+        }
+        appendWrapped(sb, line, result);
+        return sb.append(line).append('\n').toString();
+    }
+
+    // Adds text to line, first moving the line to out if the text would overflow it. A move and its
+    // number stay together; comments are added a word at a time, so they may run over several lines.
+    private static void appendWrapped(StringBuilder out, StringBuilder line, String text) {
+        if (line.length() > 0 && line.length() + 1 + text.length() > LINE_WIDTH) {
+            out.append(line).append('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) line.append(' ');
+        line.append(text);
+    }
+}
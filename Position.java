@@ -0,0 +1,612 @@
+public class Position {
+    public static final int WHITE = 0, BLACK = 1;
+    public static final int PAWN = 1, KNIGHT = 2, BISHOP = 3, ROOK = 4, QUEEN = 5, KING = 6;
+    public static final int WHITE_OO = 1, WHITE_OOO = 2, BLACK_OO = 4, BLACK_OOO = 8;
+    public static final int MAX_MOVES = 256;
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final long FIRST_ROW = 0xFFL;
+    private static final long LAST_ROW = 0xFFL << 56;
+    private static final int[] CASTLE_MASK = new int[64];
+
+    // Zobrist keys; en passant is only hashed when a capture is actually possible
+    private static final long[][] PIECE_KEYS = new long[16][64];
+    private static final long[] CASTLE_KEYS = new long[16];
+    private static final long[] EP_KEYS = new long[8];
+    private static final long SIDE_KEY;
+
+    static {
+        java.util.Random rand = new java.util.Random(0x5EED_C0DEL);
+        for (long[] keys : PIECE_KEYS) {
+            for (int sq = 0; sq < 64; sq++) keys[sq] = rand.nextLong();
+        }
+        for (int i = 0; i < 16; i++) CASTLE_KEYS[i] = rand.nextLong();
+        for (int i = 0; i < 8; i++) EP_KEYS[i] = rand.nextLong();
+        SIDE_KEY = rand.nextLong();
+
+        java.util.Arrays.fill(CASTLE_MASK, 15);
+        CASTLE_MASK[60] &= ~(WHITE_OO | WHITE_OOO);
+        CASTLE_MASK[63] &= ~WHITE_OO;
+        CASTLE_MASK[56] &= ~WHITE_OOO;
+        CASTLE_MASK[4] &= ~(BLACK_OO | BLACK_OOO);
+        CASTLE_MASK[7] &= ~BLACK_OO;
+        CASTLE_MASK[0] &= ~BLACK_OOO;
+    }
+
+    // Squares are indexed row * 8 + col with row 0 being Black's back rank, as in ChessGame.board
+    private final int[] squares = new int[64];
+    private final long[] pieces = new long[16];
+    private final long[] colors = new long[2];
+    private long occupied;
+    private int sideToMove = WHITE;
+    private int castling;
+    private int epSquare = -1;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long hash;
+
+    // Irreversible state saved by makeMove: captured piece, castling, en passant and halfmove clock,
+    // plus the hash before each move for repetition detection
+    private long[] history = new long[128];
+    private long[] hashHistory = new long[128];
+    private int ply;
+
+    // Optional network accumulator kept in step with the pieces by makeMove; not copied by copy()
+    private Nnue.Accumulator accumulator;
+
+    public static int piece(int color, int type) {
+        return (color << 3) | type;
+    }
+
+    public static int colorOf(int piece) {
+        return piece >>> 3;
+    }
+
+    public static int typeOf(int piece) {
+        return piece & 7;
+    }
+
+    // --- Construction ---
+
+    public static Position fromBoard(String[][] board, boolean whiteToMove, int castlingRights, int epSquare,
+                                     int halfmoveClock, int fullmoveNumber) {
+        Position pos = new Position();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                String s = board[r][c];
+                if (s.isEmpty()) continue;
+                int color = s.charAt(0) == 'w' ? WHITE : BLACK;
+                pos.putPiece(r * 8 + c, piece(color, "?pnbrqk".indexOf(s.charAt(1))));
+            }
+        }
+        pos.sideToMove = whiteToMove ? WHITE : BLACK;
+        pos.castling = castlingRights;
+        pos.epSquare = epSquare;
+        pos.halfmoveClock = halfmoveClock;
+        pos.fullmoveNumber = fullmoveNumber;
+        pos.hash ^= pos.stateKey();
+        return pos;
+    }
+
+    public static Position fromFen(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        if (parts.length < 2) throw new IllegalArgumentException("Bad FEN: " + fen);
+        Position pos = new Position();
+        int row = 0, col = 0;
+        for (char ch : parts[0].toCharArray()) {
+            if (ch == '/') {
+                row++;
+                col = 0;
+            } else if (Character.isDigit(ch)) {
+                col += ch - '0';
+            } else {
+                int type = "?pnbrqk".indexOf(Character.toLowerCase(ch));
+                if (type <= 0 || row > 7 || col > 7) throw new IllegalArgumentException("Bad FEN: " + fen);
+                pos.putPiece(row * 8 + col, piece(Character.isUpperCase(ch) ? WHITE : BLACK, type));
+                col++;
+            }
+        }
+        if (Long.bitCount(pos.pieces[piece(WHITE, KING)]) != 1 || Long.bitCount(pos.pieces[piece(BLACK, KING)]) != 1) {
+            throw new IllegalArgumentException("Bad FEN (kings): " + fen);
+        }
+        if (((pos.pieces[piece(WHITE, PAWN)] | pos.pieces[piece(BLACK, PAWN)]) & (FIRST_ROW | LAST_ROW)) != 0) {
+            throw new IllegalArgumentException("Bad FEN (pawn on the first or last rank): " + fen);
+        }
+        pos.sideToMove = parts[1].equals("b") ? BLACK : WHITE;
+        int other = pos.sideToMove ^ 1;
+        if (pos.isAttacked(pos.kingSquare(other), pos.sideToMove, pos.occupied)) {
+            throw new IllegalArgumentException("Bad FEN (side not to move is in check): " + fen);
+        }
+        if (parts.length > 2) {
+            for (char ch : parts[2].toCharArray()) {
+                switch (ch) {
+                    case 'K': pos.castling |= WHITE_OO; break;
+                    case 'Q': pos.castling |= WHITE_OOO; break;
+                    case 'k': pos.castling |= BLACK_OO; break;
+                    case 'q': pos.castling |= BLACK_OOO; break;
+                }
+            }
+        }
+        if (parts.length > 3 && !parts[3].equals("-")) pos.epSquare = Move.parseSquare(parts[3]);
+        if (parts.length > 4) pos.halfmoveClock = Integer.parseInt(parts[4]);
+        if (parts.length > 5) pos.fullmoveNumber = Integer.parseInt(parts[5]);
+        pos.hash ^= pos.stateKey();
+        return pos;
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < 8; r++) {
+            int empty = 0;
+            for (int c = 0; c < 8; c++) {
+                int p = squares[r * 8 + c];
+                if (p == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                char ch = " pnbrqk".charAt(typeOf(p));
+                sb.append(colorOf(p) == WHITE ? Character.toUpperCase(ch) : ch);
+            }
+            if (empty > 0) sb.append(empty);
+            if (r < 7) sb.append('/');
+        }
+        sb.append(sideToMove == WHITE ? " w " : " b ");
+        if (castling == 0) sb.append('-');
+        if ((castling & WHITE_OO) != 0) sb.append('K');
+        if ((castling & WHITE_OOO) != 0) sb.append('Q');
+        if ((castling & BLACK_OO) != 0) sb.append('k');
+        if ((castling & BLACK_OOO) != 0) sb.append('q');
+        sb.append(' ').append(epSquare < 0 ? "-" : Move.squareName(epSquare));
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    // Independent copy for another thread; move history is not carried over
+    public Position copy() {
+        Position pos = new Position();
+        pos.set(this);
+        return pos;
+    }
+
+    // Makes this position equal to other without allocating, dropping its own move history and
+    // accumulator, so one instance can be reused for many games
+    public void set(Position other) {
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        ply = 0;
+        accumulator = null;
+    }
+
+    // Compact form (40 bytes): four words of 4-bit pieces, 16 squares each, then side to move,
+    // castling, en passant square + 1, halfmove clock and fullmove number. Move history is not kept.
+    public long[] pack() {
+        long[] packed = new long[5];
+        for (int sq = 0; sq < 64; sq++) packed[sq >>> 4] |= (long) squares[sq] << ((sq & 15) * 4);
+        packed[4] = sideToMove | castling << 1 | (long) (epSquare + 1) << 5 | (long) halfmoveClock << 12
+                | (long) fullmoveNumber << 32;
+        return packed;
+    }
+
+    public static Position unpack(long[] packed) {
+        Position pos = new Position();
+        for (int sq = 0; sq < 64; sq++) {
+            int p = (int) (packed[sq >>> 4] >>> ((sq & 15) * 4)) & 15;
+            if (p != 0) pos.putPiece(sq, p);
+        }
+        long state = packed[4];
+        pos.sideToMove = (int) state & 1;
+        pos.castling = (int) (state >>> 1) & 15;
+        pos.epSquare = (int) (state >>> 5 & 127) - 1;
+        pos.halfmoveClock = (int) (state >>> 12 & 0xFFFFF);
+        pos.fullmoveNumber = (int) (state >>> 32);
+        pos.hash ^= pos.stateKey();
+        return pos;
+    }
+
+    // --- Accessors ---
+
+    public int pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[piece(color, type)];
+    }
+
+    public long occupied() {
+        return occupied;
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public int castlingRights() {
+        return castling;
+    }
+
+    public int enPassantSquare() {
+        return epSquare;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    // Attaches (and fully refreshes) a network accumulator, or detaches it with null
+    public void setAccumulator(Nnue.Accumulator acc) {
+        accumulator = acc;
+        if (acc != null) acc.refresh(this);
+    }
+
+    public Nnue.Accumulator accumulator() {
+        return accumulator;
+    }
+
+    public int ply() {
+        return ply;
+    }
+
+    // True if the current position already occurred since the last capture or pawn move
+    public boolean isRepetition() {
+        int limit = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= limit; i -= 2) {
+            if (hashHistory[i] == hash) return true;
+        }
+        return false;
+    }
+
+    // Earlier occurrences of the current position since the last capture or pawn move; two means a
+    // threefold repetition
+    public int repetitionCount() {
+        int count = 0;
+        int limit = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= limit; i -= 2) {
+            if (hashHistory[i] == hash) count++;
+        }
+        return count;
+    }
+
+    // False in king and pawn endings, where passing may be the only good move (zugzwang)
+    public boolean hasNonPawnMaterial(int color) {
+        return (colors[color] & ~pieces[piece(color, PAWN)] & ~pieces[piece(color, KING)]) != 0;
+    }
+
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[piece(color, KING)]);
+    }
+
+    public boolean inCheck() {
+        return isAttacked(kingSquare(sideToMove), sideToMove ^ 1, occupied);
+    }
+
+    public boolean isAttacked(int sq, int byColor, long occ) {
+        return (attackersTo(sq, occ) & colors[byColor]) != 0;
+    }
+
+    public long attackersTo(int sq, long occ) {
+        long bishops = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long rooks = pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        return (Attacks.pawn(BLACK, sq) & pieces[piece(WHITE, PAWN)])
+                | (Attacks.pawn(WHITE, sq) & pieces[piece(BLACK, PAWN)])
+                | (Attacks.knight(sq) & (pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)]))
+                | (Attacks.king(sq) & (pieces[piece(WHITE, KING)] | pieces[piece(BLACK, KING)]))
+                | (Attacks.bishop(sq, occ) & bishops)
+                | (Attacks.rook(sq, occ) & rooks);
+    }
+
+    // --- Legal move generation ---
+
+    public int generateLegalMoves(int[] moves) {
+        return generate(moves, false);
+    }
+
+    public boolean hasAnyLegalMove() {
+        return generate(new int[MAX_MOVES], true) > 0;
+    }
+
+    // Fills table[from] with the bitmask of legal target squares; promotions collapse to one target
+    public boolean legalTargets(long[] table) {
+        java.util.Arrays.fill(table, 0L);
+        int[] moves = new int[MAX_MOVES];
+        int n = generate(moves, false);
+        for (int i = 0; i < n; i++) {
+            table[Move.from(moves[i])] |= 1L << Move.to(moves[i]);
+        }
+        return n > 0;
+    }
+
+    // Emits only legal moves: checkers and pinned pieces are computed once, so no move is tried on the board
+    private int generate(int[] moves, boolean firstOnly) {
+        int us = sideToMove, them = us ^ 1;
+        long own = colors[us], enemy = colors[them];
+        int ksq = kingSquare(us);
+        long checkers = attackersTo(ksq, occupied) & enemy;
+        int n = 0;
+
+        // King steps are tested with the king lifted off the board so it cannot hide behind itself
+        long occNoKing = occupied ^ (1L << ksq);
+        long targets = Attacks.king(ksq) & ~own;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (!isAttacked(to, them, occNoKing)) moves[n++] = Move.of(ksq, to);
+            targets &= targets - 1;
+        }
+        if (firstOnly && n > 0) return n;
+        if (Long.bitCount(checkers) > 1) return n; // Double check: only the king may move
+
+        long evasionMask = ~0L;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            evasionMask = checkers | Attacks.between(ksq, checker);
+        } else {
+            n = addCastling(moves, n, us, ksq);
+        }
+        long pinned = pinnedPieces(us, ksq);
+
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            long bb = pieces[piece(us, type)];
+            if (type == KNIGHT) bb &= ~pinned; // A pinned knight can never move
+            while (bb != 0) {
+                int from = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+                long t;
+                switch (type) {
+                    case KNIGHT: t = Attacks.knight(from); break;
+                    case BISHOP: t = Attacks.bishop(from, occupied); break;
+                    case ROOK: t = Attacks.rook(from, occupied); break;
+                    default: t = Attacks.queen(from, occupied); break;
+                }
+                t &= ~own & evasionMask;
+                if ((pinned & (1L << from)) != 0) t &= Attacks.line(ksq, from);
+                while (t != 0) {
+                    moves[n++] = Move.of(from, Long.numberOfTrailingZeros(t));
+                    t &= t - 1;
+                }
+                if (firstOnly && n > 0) return n;
+            }
+        }
+
+        return addPawnMoves(moves, n, us, ksq, enemy, evasionMask, pinned, firstOnly);
+    }
+
+    private int addPawnMoves(int[] moves, int n, int us, int ksq, long enemy, long evasionMask, long pinned, boolean firstOnly) {
+        int push = us == WHITE ? -8 : 8;
+        long promotionRow = us == WHITE ? FIRST_ROW : LAST_ROW;
+        long startRow = us == WHITE ? 0xFFL << 48 : 0xFFL << 8;
+        long bb = pieces[piece(us, PAWN)];
+        while (bb != 0) {
+            int from = Long.numberOfTrailingZeros(bb);
+            bb &= bb - 1;
+
+            long t = 0L;
+            int one = from + push;
+            if (squares[one] == 0) {
+                t |= 1L << one;
+                if ((startRow & (1L << from)) != 0 && squares[one + push] == 0) t |= 1L << (one + push);
+            }
+            t |= Attacks.pawn(us, from) & enemy;
+            t &= evasionMask;
+            if ((pinned & (1L << from)) != 0) t &= Attacks.line(ksq, from);
+            while (t != 0) {
+                int to = Long.numberOfTrailingZeros(t);
+                t &= t - 1;
+                if ((promotionRow & (1L << to)) != 0) {
+                    for (int promo = QUEEN; promo >= KNIGHT; promo--) moves[n++] = Move.of(from, to, promo, 0);
+                } else {
+                    moves[n++] = Move.of(from, to);
+                }
+            }
+
+            // En passant removes two pieces from one rank, so it is checked against the resulting occupancy;
+            // this also covers capturing a checking pawn and the horizontal discovered check.
+            if (epSquare >= 0 && (Attacks.pawn(us, from) & (1L << epSquare)) != 0) {
+                int capSq = epSquare - push;
+                long occ = (occupied ^ (1L << from) ^ (1L << capSq)) | (1L << epSquare);
+                if ((attackersTo(ksq, occ) & enemy & ~(1L << capSq)) == 0) {
+                    moves[n++] = Move.of(from, epSquare, 0, Move.FLAG_EN_PASSANT);
+                }
+            }
+            if (firstOnly && n > 0) return n;
+        }
+        return n;
+    }
+
+    private int addCastling(int[] moves, int n, int us, int ksq) {
+        int base = us == WHITE ? 56 : 0;
+        int oo = us == WHITE ? WHITE_OO : BLACK_OO;
+        int ooo = us == WHITE ? WHITE_OOO : BLACK_OOO;
+        int rook = piece(us, ROOK);
+        int them = us ^ 1;
+        if (ksq != base + 4) return n;
+        if ((castling & oo) != 0 && squares[base + 7] == rook
+                && squares[base + 5] == 0 && squares[base + 6] == 0
+                && !isAttacked(base + 5, them, occupied) && !isAttacked(base + 6, them, occupied)) {
+            moves[n++] = Move.of(ksq, base + 6, 0, Move.FLAG_CASTLE);
+        }
+        if ((castling & ooo) != 0 && squares[base] == rook
+                && squares[base + 1] == 0 && squares[base + 2] == 0 && squares[base + 3] == 0
+                && !isAttacked(base + 3, them, occupied) && !isAttacked(base + 2, them, occupied)) {
+            moves[n++] = Move.of(ksq, base + 2, 0, Move.FLAG_CASTLE);
+        }
+        return n;
+    }
+
+    private long pinnedPieces(int us, int ksq) {
+        int them = us ^ 1;
+        long snipers = (Attacks.rook(ksq, 0L) & (pieces[piece(them, ROOK)] | pieces[piece(them, QUEEN)]))
+                | (Attacks.bishop(ksq, 0L) & (pieces[piece(them, BISHOP)] | pieces[piece(them, QUEEN)]));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int s = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(ksq, s) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & colors[us]) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+
+    // --- Make / unmake ---
+
+    public void makeMove(int move) {
+        int from = Move.from(move), to = Move.to(move);
+        int us = sideToMove;
+        int moving = squares[from];
+        int capSq = Move.isEnPassant(move) ? to + (us == WHITE ? 8 : -8) : to;
+        int captured = squares[capSq];
+
+        if (ply == history.length) {
+            history = java.util.Arrays.copyOf(history, ply * 2);
+            hashHistory = java.util.Arrays.copyOf(hashHistory, ply * 2);
+        }
+        hashHistory[ply] = hash;
+        if (accumulator != null) accumulator.push();
+        history[ply++] = captured | (castling << 4) | ((long) (epSquare + 1) << 8) | ((long) halfmoveClock << 16);
+        hash ^= stateKey();
+
+        if (captured != 0) removePiece(capSq);
+        removePiece(from);
+        putPiece(to, Move.promotion(move) != 0 ? piece(us, Move.promotion(move)) : moving);
+
+        if (Move.isCastle(move)) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookFrom];
+            removePiece(rookFrom);
+            putPiece(rookTo, rook);
+        }
+
+        epSquare = typeOf(moving) == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+        halfmoveClock = typeOf(moving) == PAWN || captured != 0 ? 0 : halfmoveClock + 1;
+        castling &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        if (us == BLACK) fullmoveNumber++;
+        sideToMove = us ^ 1;
+        hash ^= stateKey();
+    }
+
+    // Passes the turn, for null-move pruning. The halfmove clock restarts so that repetition detection
+    // never matches positions across the null move.
+    public void makeNullMove() {
+        if (ply == history.length) {
+            history = java.util.Arrays.copyOf(history, ply * 2);
+            hashHistory = java.util.Arrays.copyOf(hashHistory, ply * 2);
+        }
+        hashHistory[ply] = hash;
+        history[ply++] = (castling << 4) | ((long) (epSquare + 1) << 8) | ((long) halfmoveClock << 16);
+        hash ^= stateKey();
+        epSquare = -1;
+        halfmoveClock = 0;
+        sideToMove ^= 1;
+        hash ^= stateKey();
+    }
+
+    public void unmakeNullMove() {
+        sideToMove ^= 1;
+        long saved = history[--ply];
+        epSquare = (int) ((saved >>> 8) & 127) - 1;
+        halfmoveClock = (int) (saved >>> 16);
+        hash = hashHistory[ply];
+    }
+
+    // Hash contribution of side to move, castling rights and a capturable en passant square
+    private long stateKey() {
+        long key = CASTLE_KEYS[castling];
+        if (sideToMove == BLACK) key ^= SIDE_KEY;
+        if (epSquare >= 0 && (Attacks.pawn(sideToMove ^ 1, epSquare) & pieces[piece(sideToMove, PAWN)]) != 0) {
+            key ^= EP_KEYS[epSquare & 7];
+        }
+        return key;
+    }
+
+    public void unmakeMove(int move) {
+        int from = Move.from(move), to = Move.to(move);
+        sideToMove ^= 1;
+        int us = sideToMove;
+        long saved = history[--ply];
+        int captured = (int) (saved & 15);
+        castling = (int) ((saved >>> 4) & 15);
+        epSquare = (int) ((saved >>> 8) & 127) - 1;
+        halfmoveClock = (int) (saved >>> 16);
+        if (us == BLACK) fullmoveNumber--;
+        // The accumulator state before the move is still on its stack, so skip the updates and pop
+        Nnue.Accumulator acc = accumulator;
+        accumulator = null;
+
+        if (Move.isCastle(move)) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookTo];
+            removePiece(rookTo);
+            putPiece(rookFrom, rook);
+        }
+
+        int moved = Move.promotion(move) != 0 ? piece(us, PAWN) : squares[to];
+        removePiece(to);
+        putPiece(from, moved);
+        if (captured != 0) {
+            putPiece(Move.isEnPassant(move) ? to + (us == WHITE ? 8 : -8) : to, captured);
+        }
+        hash = hashHistory[ply];
+        accumulator = acc;
+        if (acc != null) acc.pop();
+    }
+
+    private void putPiece(int sq, int p) {
+        long bit = 1L << sq;
+        squares[sq] = p;
+        pieces[p] |= bit;
+        colors[colorOf(p)] |= bit;
+        occupied |= bit;
+        hash ^= PIECE_KEYS[p][sq];
+        if (accumulator != null) accumulator.add(p, sq);
+    }
+
+    private void removePiece(int sq) {
+        int p = squares[sq];
+        long bit = 1L << sq;
+        squares[sq] = 0;
+        pieces[p] &= ~bit;
+        colors[colorOf(p)] &= ~bit;
+        occupied &= ~bit;
+        hash ^= PIECE_KEYS[p][sq];
+        if (accumulator != null) accumulator.remove(p, sq);
+    }
+
+    // --- Verification ---
+
+    // Counts leaf nodes of the legal move tree; compare against published perft numbers
+    public long perft(int depth) {
+        int[] moves = new int[MAX_MOVES];
+        int n = generateLegalMoves(moves);
+        if (depth <= 1) return depth == 1 ? n : 1;
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            makeMove(moves[i]);
+            nodes += perft(depth - 1);
+            unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+}
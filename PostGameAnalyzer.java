@@ -0,0 +1,330 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Reviews a finished game. Every position of the game is searched with the same fixed budget, each as
+// its own task on a fork-join pool, so a 60-move game keeps every core busy instead of taking a minute
+// on one. Each worker thread reuses one Search and hash table, cleared before every position, so the
+// report is the same whatever the thread count and whichever thread takes which position.
+//
+// A move's loss is how much worse the position after it is for the mover than the best score found
+// before it, both capped at CAP_CP so that a won position that stays won loses nothing. The loss
+// decides the judgement; accuracy maps the drop in winning chances to 0..100 per move.
+public class PostGameAnalyzer implements AutoCloseable {
+    public static final long DEFAULT_NODES = 150_000;
+    public static final int CAP_CP = 1000;
+    public static final int HASH_MB = 4; // Per thread; holds a DEFAULT_NODES search and clears quickly
+
+    public enum Judgement {
+        BEST("", 0, 0), GOOD("", 0, 0), INACCURACY("?!", 6, 50), MISTAKE("?", 2, 100), BLUNDER("??", 4, 300);
+
+        public final String symbol;
+        public final int nag; // PGN numeric annotation glyph, 0 for none
+        public final int minLoss; // Centipawns
+
+        Judgement(String symbol, int nag, int minLoss) {
+            this.symbol = symbol;
+            this.nag = nag;
+            this.minLoss = minLoss;
+        }
+
+        static Judgement of(int loss, boolean best) {
+            if (best) return BEST;
+            if (loss >= BLUNDER.minLoss) return BLUNDER;
+            if (loss >= MISTAKE.minLoss) return MISTAKE;
+            if (loss >= INACCURACY.minLoss) return INACCURACY;
+            return GOOD;
+        }
+
+        public String label() {
+            return name().charAt(0) + name().substring(1).toLowerCase();
+        }
+    }
+
+    public static class Annotated {
+        public final int ply; // The move leads from position ply to ply + 1
+        public final int color; // The side that played it
+        public final int fullmove;
+        public final int move;
+        public final String san;
+        public final int bestMove; // The engine's choice in the position before, or Move.NONE
+        public final String bestSan;
+        public final int loss; // Centipawns, from the mover's point of view
+        public final double accuracy;
+        public final Judgement judgement;
+
+        Annotated(int ply, int color, int fullmove, int move, String san, int bestMove, String bestSan, int loss,
+                  double accuracy, Judgement judgement) {
+            this.ply = ply;
+            this.color = color;
+            this.fullmove = fullmove;
+            this.move = move;
+            this.san = san;
+            this.bestMove = bestMove;
+            this.bestSan = bestSan;
+            this.loss = loss;
+            this.accuracy = accuracy;
+            this.judgement = judgement;
+        }
+    }
+
+    public static class Report {
+        public final String startFen;
+        public final int[] whiteScores; // One per position, plies 0..moves; centipawns from White's point of view
+        public final Annotated[] moves;
+        public final String result;
+        public final long nodes;
+        public final long nanos;
+
+        Report(String startFen, int[] whiteScores, Annotated[] moves, String result, long nodes, long nanos) {
+            this.startFen = startFen;
+            this.whiteScores = whiteScores;
+            this.moves = moves;
+            this.result = result;
+            this.nodes = nodes;
+            this.nanos = nanos;
+        }
+
+        public double accuracy(int color) {
+            double sum = 0;
+            int count = 0;
+            for (Annotated a : moves) {
+                if (a.color != color) continue;
+                sum += a.accuracy;
+                count++;
+            }
+            return count == 0 ? 100 : sum / count;
+        }
+
+        public int averageLoss(int color) {
+            long sum = 0;
+            int count = 0;
+            for (Annotated a : moves) {
+                if (a.color != color) continue;
+                sum += a.loss;
+                count++;
+            }
+            return count == 0 ? 0 : (int) Math.round(sum / (double) count);
+        }
+
+        public int count(int color, Judgement judgement) {
+            int count = 0;
+            for (Annotated a : moves) {
+                if (a.color == color && a.judgement == judgement) count++;
+            }
+            return count;
+        }
+
+        // e.g. "White: 87.4% accuracy, 31 cp average loss, 2 inaccuracies, 1 mistake, 0 blunders"
+        public String summary(int color) {
+            return String.format("%s: %.1f%% accuracy, %d cp average loss, %s, %s, %s",
+                    color == Position.WHITE ? "White" : "Black", accuracy(color), averageLoss(color),
+                    plural(count(color, Judgement.INACCURACY), "inaccuracy", "inaccuracies"),
+                    plural(count(color, Judgement.MISTAKE), "mistake", "mistakes"),
+                    plural(count(color, Judgement.BLUNDER), "blunder", "blunders"));
+        }
+
+        private static String plural(int n, String one, String many) {
+            return n + " " + (n == 1 ? one : many);
+        }
+
+        // Annotated PGN: a glyph for each inaccuracy, mistake and blunder, the engine's choice after
+        // them, and every position's score as a [%eval] comment
+        public String toPgn(Map<String, String> tags) {
+            Map<String, String> all = new LinkedHashMap<>(tags);
+            all.putIfAbsent("Annotator", "PostGameAnalyzer");
+            all.put("WhiteAccuracy", String.format("%.1f", accuracy(Position.WHITE)));
+            all.put("BlackAccuracy", String.format("%.1f", accuracy(Position.BLACK)));
+            int[] played = new int[moves.length];
+            String[] annotations = new String[moves.length];
+            for (Annotated a : moves) {
+                played[a.ply] = a.move;
+                StringBuilder sb = new StringBuilder();
+                if (a.judgement.nag != 0) sb.append('$').append(a.judgement.nag).append(' ');
+                sb.append("{[%eval ").append(formatEval(whiteScores[a.ply + 1])).append(']');
+                if (a.judgement.minLoss > 0 && a.bestSan != null) {
+                    sb.append(' ').append(a.judgement.label()).append(". ").append(a.bestSan).append(" was best.");
+                }
+                annotations[a.ply] = sb.append('}').toString();
+            }
+            return Pgn.write(all, startFen, played, annotations, result);
+        }
+    }
+
+    private final Search.Limits limits;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers;
+
+    private static final class Worker {
+        final TranspositionTable tt;
+        final Search search;
+
+        Worker(int hashMb) {
+            tt = new TranspositionTable(hashMb);
+            search = new Search(tt, null);
+        }
+    }
+
+    public PostGameAnalyzer(int threads, Search.Limits limits, int hashMbPerThread) {
+        this.limits = limits;
+        AtomicInteger ids = new AtomicInteger();
+        this.pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("post-game-" + ids.getAndIncrement());
+            return t;
+        }, null, false);
+        this.workers = ThreadLocal.withInitial(() -> new Worker(hashMbPerThread));
+    }
+
+    // -Dchess.report.threads (default all cores) and -Dchess.report.nodes per position
+    public static PostGameAnalyzer fromProperties() {
+        return new PostGameAnalyzer(Integer.getInteger("chess.report.threads", Runtime.getRuntime().availableProcessors()),
+                Search.Limits.nodes(Long.getLong("chess.report.nodes", DEFAULT_NODES)), HASH_MB);
+    }
+
+    // Blocks until every position is searched; progress receives the number done so far from the
+    // worker threads. Returns null if cancelled.
+    public Report analyze(Position start, int[] moves, String result, AtomicBoolean cancel, IntConsumer progress) {
+        long begin = System.nanoTime();
+        Position[] positions = new Position[moves.length + 1];
+        Position pos = start.copy();
+        positions[0] = pos.copy();
+        for (int i = 0; i < moves.length; i++) {
+            pos.makeMove(moves[i]);
+            positions[i + 1] = pos.copy();
+        }
+        Search.Result[] results = new Search.Result[positions.length];
+        AtomicInteger done = new AtomicInteger();
+        pool.invoke(new Evaluate(positions, results, 0, positions.length, cancel, done, progress));
+        if (cancel != null && cancel.get()) return null;
+
+        int[] whiteScores = new int[positions.length];
+        long nodes = 0;
+        for (int i = 0; i < positions.length; i++) {
+            whiteScores[i] = positions[i].sideToMove() == Position.WHITE ? results[i].score : -results[i].score;
+            nodes += results[i].nodes;
+        }
+        Annotated[] annotated = new Annotated[moves.length];
+        pos = start.copy();
+        for (int i = 0; i < moves.length; i++) {
+            int sign = pos.sideToMove() == Position.WHITE ? 1 : -1;
+            int before = capped(sign * whiteScores[i]), after = capped(sign * whiteScores[i + 1]);
+            int best = results[i].bestMove;
+            boolean isBest = best == moves[i];
+            int loss = isBest ? 0 : Math.max(0, before - after);
+            double accuracy = isBest ? 100 : moveAccuracy(before, after);
+            String bestSan = best == Move.NONE ? null : Pgn.toSan(pos, best);
+            String san = Pgn.toSan(pos, moves[i]);
+            annotated[i] = new Annotated(i, pos.sideToMove(), pos.fullmoveNumber(), moves[i], san, best, bestSan, loss, accuracy, Judgement.of(loss, isBest));
+            pos.makeMove(moves[i]);
+        }
+        if (result == null) result = resultOf(pos);
+        return new Report(start.toFen(), whiteScores, annotated, result, nodes, System.nanoTime() - begin);
+    }
+
+    // Splits the range in halves down to single positions; work stealing balances the uneven searches
+    private final class Evaluate extends RecursiveAction {
+        private final Position[] positions;
+        private final Search.Result[] results;
+        private final int from, to;
+        private final AtomicBoolean cancel;
+        private final AtomicInteger done;
+        private final IntConsumer progress;
+
+        Evaluate(Position[] positions, Search.Result[] results, int from, int to, AtomicBoolean cancel,
+                 AtomicInteger done, IntConsumer progress) {
+            this.positions = positions;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.cancel = cancel;
+            this.done = done;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Evaluate(positions, results, from, mid, cancel, done, progress),
+                        new Evaluate(positions, results, mid, to, cancel, done, progress));
+                return;
+            }
+            if (cancel != null && cancel.get()) return;
+            Worker w = workers.get();
+            w.tt.clear();
+            results[from] = w.search.analyze(positions[from], limits, 1, 1, null, cancel);
+            int count = done.incrementAndGet();
+            if (progress != null) progress.accept(count);
+        }
+    }
+
+    // Centipawns capped at CAP_CP, so mate scores count as a large but finite advantage
+    private static int capped(int score) {
+        int cp = score * 100 / Evaluation.pieceValue(Position.PAWN);
+        return Math.max(-CAP_CP, Math.min(CAP_CP, cp));
+    }
+
+    // Winning chances in percent for the side with a centipawn advantage, and the accuracy of a move
+    // from its drop; the constants are the fit lichess publishes for its accuracy figures
+    static double winPercent(int cp) {
+        return 50 + 50 * (2 / (1 + Math.exp(-0.00368208 * cp)) - 1);
+    }
+
+    static double moveAccuracy(int beforeCp, int afterCp) {
+        double drop = Math.max(0, winPercent(beforeCp) - winPercent(afterCp));
+        return Math.max(0, Math.min(100, 103.1668 * Math.exp(-0.04354 * drop) - 3.1669));
+    }
+
+    private static String resultOf(Position end) {
+        switch (Arbiter.status(end, new int[Position.MAX_MOVES])) {
+            case CHECKMATE: return end.sideToMove() == Position.WHITE ? "0-1" : "1-0";
+            case ONGOING: return "*";
+            default: return "1/2-1/2";
+        }
+    }
+
+    // Score for a [%eval] comment: pawns with two decimals, or #N / #-N for mate
+    static String formatEval(int whiteScore) {
+        if (Search.isMate(whiteScore)) return Search.formatMate(whiteScore);
+        return String.format("%.2f", whiteScore / (double) Evaluation.pieceValue(Position.PAWN));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // java PostGameAnalyzer <games.pgn> [nodes=150000] [threads=all cores]
+    // Writes each game as annotated PGN, with both sides' summary and the time taken on stderr
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java PostGameAnalyzer <games.pgn> [nodes] [threads]");
+            System.exit(2);
+        }
+        long nodes = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_NODES;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             Pgn.Reader reader = new Pgn.Reader(in);
+             PostGameAnalyzer analyzer = new PostGameAnalyzer(threads, Search.Limits.nodes(nodes), HASH_MB)) {
+            Pgn.Game game;
+            while ((game = reader.next()) != null) {
+                Report r = analyzer.analyze(Position.fromFen(game.startFen), game.moves, game.result, null, null);
+                System.out.println(r.toPgn(game.tags));
+                System.err.printf("%d plies, %d positions in %.2f s on %d threads (%dk nodes)%n  %s%n  %s%n",
+                        game.moves.length, r.whiteScores.length, r.nanos / 1e9, threads, r.nodes / 1000,
+                        r.summary(Position.WHITE), r.summary(Position.BLACK));
+            }
+        }
+    }
+}
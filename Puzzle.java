@@ -0,0 +1,89 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// A tactic to solve: the position, the solution (the solver's moves alternating with the forced
+// replies, solver first) and theme tags. Stored one per line, tab-separated:
+//   FEN, solution in UCI, comma-separated themes, source (game number and ply)
+public final class Puzzle {
+    public final String fen;
+    public final int[] solution;
+    public final String[] themes;
+    public final String source;
+
+    public Puzzle(String fen, int[] solution, String[] themes, String source) {
+        this.fen = fen;
+        this.solution = solution;
+        this.themes = themes;
+        this.source = source;
+    }
+
+    public String toLine() {
+        StringBuilder sb = new StringBuilder(fen).append('\t');
+        for (int i = 0; i < solution.length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(Move.toUci(solution[i]));
+        }
+        return sb.append('\t').append(String.join(",", themes)).append('\t').append(source).toString();
+    }
+
+    public static Puzzle parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length < 2) throw new IllegalArgumentException("Bad puzzle line: " + line);
+        Position pos = Position.fromFen(fields[0]);
+        String[] uci = fields[1].trim().split(" ");
+        int[] solution = new int[uci.length];
+        for (int i = 0; i < uci.length; i++) {
+            solution[i] = parseUci(pos, uci[i]);
+            if (solution[i] == Move.NONE) throw new IllegalArgumentException("Illegal solution move " + uci[i] + ": " + line);
+            pos.makeMove(solution[i]);
+        }
+        String[] themes = fields.length > 2 && !fields[2].isEmpty() ? fields[2].split(",") : new String[0];
+        return new Puzzle(fields[0], solution, themes, fields.length > 3 ? fields[3] : "");
+    }
+
+    // Reads a puzzle file, or every puzzles-*.txt file in a directory; lines that do not parse are skipped
+    public static List<Puzzle> load(Path path) throws IOException {
+        List<Puzzle> puzzles = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> dir = Files.newDirectoryStream(path, "puzzles-*.txt")) {
+                for (Path file : dir) files.add(file);
+            }
+            files.sort(null);
+            for (Path file : files) read(file, puzzles);
+        } else {
+            read(path, puzzles);
+        }
+        return puzzles;
+    }
+
+    private static void read(Path file, List<Puzzle> puzzles) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                try {
+                    puzzles.add(parse(line));
+                } catch (IllegalArgumentException e) {
+                    // Skip
+                }
+            }
+        }
+    }
+
+    // The legal move with this UCI name, or Move.NONE
+    public static int parseUci(Position pos, String uci) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int n = pos.generateLegalMoves(moves);
+        for (int i = 0; i < n; i++) {
+            if (Move.toUci(moves[i]).equals(uci)) return moves[i];
+        }
+        return Move.NONE;
+    }
+}
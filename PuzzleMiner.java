@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finds tactics in a game archive. Every position of every game gets a short fixed-node search; where
+// a move swings the score by SWING or more in the opponent's favour, the position after it is checked
+// with a deeper multi-PV search, and kept only if the solver's moves are unique all along the line.
+//
+// Games are numbered across all input files and mined in chunks of CHUNK_GAMES on a thread pool. Each
+// chunk's puzzles go to their own file (puzzles-NNNNNN.txt, renamed into place when complete), so an
+// interrupted run started again with the same inputs skips the chunks already done.
+public final class PuzzleMiner {
+    private static final int CHUNK_GAMES = 256;
+    private static final int MIN_PLY = 10; // Book moves rarely hold tactics worth a puzzle
+    private static final int SWING = 200;
+    private static final int WINNING = 250; // The solver must end up at least this far ahead
+    private static final int SECOND_BEST_MAX = 100; // For uniqueness, no other move may keep more than this
+    private static final int CRUSHING = 600;
+    private static final int MAX_SOLVER_MOVES = 4;
+    private static final int SACRIFICE_MARGIN = 200;
+
+    private final Path outputDir;
+    private final long scanNodes;
+    private final int verifyDepth;
+    private final int hashMbPerThread;
+
+    private final AtomicLong gamesMined = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong puzzlesFound = new AtomicLong();
+
+    public PuzzleMiner(Path outputDir, long scanNodes, int verifyDepth, int hashMbPerThread) {
+        this.outputDir = outputDir;
+        this.scanNodes = scanNodes;
+        this.verifyDepth = verifyDepth;
+        this.hashMbPerThread = hashMbPerThread;
+    }
+
+    public void run(List<Path> pgns, int threads) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        AtomicInteger ids = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "puzzle-miner-" + ids.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        Semaphore queued = new Semaphore(threads * 2); // Bounds the games held in memory
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+        long start = System.nanoTime(), lastReport = start;
+        long gameNumber = 0, skipped = 0;
+        List<Pgn.Game> batch = new ArrayList<>();
+        try {
+            for (Path pgn : pgns) {
+                try (Pgn.Reader reader = new Pgn.Reader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+                    Pgn.Game game;
+                    while ((game = reader.next()) != null) {
+                        long chunk = gameNumber++ / CHUNK_GAMES;
+                        if (Files.exists(chunkFile(chunk))) { // Done in an earlier run
+                            skipped++;
+                            continue;
+                        }
+                        batch.add(game);
+                        if (gameNumber % CHUNK_GAMES == 0) {
+                            chunks.add(submit(pool, workers, queued, chunk, batch));
+                            batch = new ArrayList<>();
+                        }
+                        if (System.nanoTime() - lastReport > 5_000_000_000L) {
+                            lastReport = System.nanoTime();
+                            report(start, skipped);
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) chunks.add(submit(pool, workers, queued, (gameNumber - 1) / CHUNK_GAMES, batch));
+            for (CompletableFuture<Void> chunk : chunks) {
+                while (!chunk.isDone()) {
+                    try {
+                        chunk.get(5, TimeUnit.SECONDS);
+                    } catch (TimeoutException e) {
+                        report(start, skipped);
+                    } catch (ExecutionException e) {
+                        throw new IOException("Mining failed", e.getCause());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report(start, skipped);
+    }
+
+    private CompletableFuture<Void> submit(ExecutorService pool, ThreadLocal<Worker> workers, Semaphore queued,
+                                           long chunk, List<Pgn.Game> games) throws InterruptedException {
+        queued.acquire();
+        long firstGame = chunk * CHUNK_GAMES;
+        CompletableFuture<Void> f = CompletableFuture.runAsync(() -> {
+            StringBuilder out = new StringBuilder();
+            Worker worker = workers.get();
+            for (int i = 0; i < games.size(); i++) {
+                for (Puzzle p : worker.mine(games.get(i), firstGame + i + 1)) out.append(p.toLine()).append('\n');
+                gamesMined.incrementAndGet();
+            }
+            try {
+                Path tmp = outputDir.resolve(chunkFile(chunk).getFileName() + ".tmp");
+                Files.write(tmp, out.toString().getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, chunkFile(chunk), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+        f.whenComplete((r, e) -> queued.release());
+        return f;
+    }
+
+    private Path chunkFile(long chunk) {
+        return outputDir.resolve(String.format("puzzles-%06d.txt", chunk));
+    }
+
+    private void report(long start, long skipped) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long games = gamesMined.get();
+        System.out.printf("%,d games mined (%,d skipped)  %,d candidates  %,d puzzles  %,.1f games/s%n",
+                games, skipped, candidates.get(), puzzlesFound.get(), games / seconds);
+    }
+
+    // --- Worker ---
+
+    private final class Worker {
+        private final Search search = new Search(new TranspositionTable(hashMbPerThread), null);
+        private Search.Line[] lastLines;
+
+        List<Puzzle> mine(Pgn.Game game, long gameNumber) {
+            List<Puzzle> puzzles = new ArrayList<>();
+            if (game.error != null && game.moves.length == 0) return puzzles;
+            Position pos = Position.fromFen(game.startFen);
+            int before = scan(pos); // Side to move's point of view
+            int lastFirstMove = Move.NONE; // An ignored threat gives the same puzzle again two plies later
+            for (int ply = 0; ply < game.moves.length; ply++) {
+                pos.makeMove(game.moves[ply]);
+                if (!pos.hasAnyLegalMove()) break;
+                int after = scan(pos);
+                // after is the opponent's score, before the mover's: the move handed over at least SWING
+                if (ply + 1 >= MIN_PLY && after >= WINNING && after + before >= SWING) {
+                    candidates.incrementAndGet();
+                    Puzzle p = verify(pos.copy(), "game " + gameNumber + " ply " + (ply + 1));
+                    if (p != null && p.solution[0] != lastFirstMove) {
+                        lastFirstMove = p.solution[0];
+                        puzzles.add(p);
+                        puzzlesFound.incrementAndGet();
+                    }
+                }
+                before = after;
+            }
+            return puzzles;
+        }
+
+        private int scan(Position pos) {
+            return search.search(pos, Search.Limits.nodes(scanNodes)).score;
+        }
+
+        // Follows the solution while the solver's best move is unique and still winning; null if the
+        // first move already fails
+        private Puzzle verify(Position pos, String source) {
+            String fen = pos.toFen();
+            List<Integer> line = new ArrayList<>();
+            int startScore = 0;
+            int reply = Move.NONE; // Opponent's answer to the last solver move, added once another solver move follows
+            boolean mated = false;
+            for (int solverMoves = 0; solverMoves < MAX_SOLVER_MOVES; solverMoves++) {
+                Search.Line[] lines = analyse(pos);
+                if (lines == null || lines.length < 2) break; // A forced move is no puzzle
+                Search.Line best = lines[0], second = lines[1];
+                if (best.score < WINNING || !isUnique(best.score, second.score)) break;
+                if (solverMoves == 0) {
+                    startScore = best.score;
+                } else {
+                    line.add(reply);
+                }
+                int move = best.pv[0];
+                line.add(move);
+                pos.makeMove(move);
+                if (!pos.hasAnyLegalMove()) {
+                    mated = pos.inCheck();
+                    break;
+                }
+                reply = best.pv.length > 1 ? best.pv[1] : search.search(pos, Search.Limits.depth(verifyDepth - 1)).bestMove;
+                pos.makeMove(reply);
+                if (!pos.hasAnyLegalMove()) break;
+            }
+            if (line.isEmpty() || (isMate(startScore) && !mated)) return null; // Mates must be played out
+            int[] solution = new int[line.size()];
+            for (int i = 0; i < solution.length; i++) solution[i] = line.get(i);
+            return new Puzzle(fen, solution, themes(Position.fromFen(fen), solution, startScore), source);
+        }
+
+        private Search.Line[] analyse(Position pos) {
+            lastLines = null;
+            search.analyze(pos, Search.Limits.depth(verifyDepth), 2, 1,
+                    (depth, lines, nodes, nanos) -> lastLines = lines, null);
+            return lastLines;
+        }
+    }
+
+    private static boolean isUnique(int best, int second) {
+        if (isMate(best)) return !isMate(second) || second < 0;
+        return second <= SECOND_BEST_MAX;
+    }
+
+    private static boolean isMate(int score) {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    // --- Themes ---
+
+    static String[] themes(Position pos, int[] solution, int score) {
+        List<String> themes = new ArrayList<>();
+        int solverMoves = (solution.length + 1) / 2;
+        if (isMate(score)) {
+            themes.add("mate");
+            themes.add("mateIn" + (Search.MATE - score + 1) / 2);
+        } else {
+            themes.add(score >= CRUSHING ? "crushing" : "advantage");
+        }
+        themes.add(solverMoves == 1 ? "oneMove" : solverMoves == 2 ? "short" : "long");
+
+        int first = solution[0];
+        int from = Move.from(first), to = Move.to(first);
+        int solver = pos.sideToMove(), opponent = solver ^ 1;
+        int moved = Position.typeOf(pos.pieceAt(from));
+        int captured = Move.isEnPassant(first) ? Position.PAWN : Position.typeOf(pos.pieceAt(to));
+        Position p = pos.copy();
+        boolean promotion = false;
+        for (int i = 0; i < solution.length; i += 2) {
+            if (Move.promotion(solution[i]) != 0) promotion = true;
+        }
+        p.makeMove(first);
+        if (moved != Position.KING && p.isAttacked(to, opponent, p.occupied())
+                && value(moved) - value(captured) >= SACRIFICE_MARGIN) {
+            themes.add("sacrifice");
+        }
+        if (forkTargets(p, to, solver) >= 2) themes.add("fork");
+        if (promotion) themes.add("promotion");
+
+        int pieces = 0;
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+            pieces += Long.bitCount(pos.pieces(Position.WHITE, type) | pos.pieces(Position.BLACK, type));
+        }
+        themes.add(pieces <= 4 ? "endgame" : "middlegame");
+        return themes.toArray(new String[0]);
+    }
+
+    // Opponent pieces (not pawns) attacked by the piece on sq that are worth more than it or are the king
+    private static int forkTargets(Position pos, int sq, int color) {
+        int type = Position.typeOf(pos.pieceAt(sq));
+        long occ = pos.occupied();
+        long attacks;
+        switch (type) {
+            case Position.PAWN: attacks = Attacks.pawn(color, sq); break;
+            case Position.KNIGHT: attacks = Attacks.knight(sq); break;
+            case Position.BISHOP: attacks = Attacks.bishop(sq, occ); break;
+            case Position.ROOK: attacks = Attacks.rook(sq, occ); break;
+            case Position.QUEEN: attacks = Attacks.queen(sq, occ); break;
+            default: attacks = Attacks.king(sq); break;
+        }
+        int targets = 0;
+        for (int t = Position.KNIGHT; t <= Position.KING; t++) {
+            if (t == Position.KING || value(t) > value(type)) targets += Long.bitCount(attacks & pos.pieces(color ^ 1, t));
+        }
+        return targets;
+    }
+
+    private static int value(int type) {
+        return type == 0 ? 0 : Evaluation.pieceValue(type);
+    }
+
+    // java PuzzleMiner <outputDir> <games.pgn>... [-Dnodes=20000 -Ddepth=10 -Dthreads=all cores -Dhash=16]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: java PuzzleMiner <outputDir> <games.pgn>...");
+            System.exit(2);
+        }
+        List<Path> pgns = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) pgns.add(Paths.get(args[i]));
+        int threads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+        PuzzleMiner miner = new PuzzleMiner(Paths.get(args[0]), Long.getLong("nodes", 20_000),
+                Integer.getInteger("depth", 10), Integer.getInteger("hash", 16));
+        miner.run(pgns, threads);
+    }
+}
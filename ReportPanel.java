@@ -0,0 +1,285 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// Post-game review: an evaluation graph over the whole game, the move list with each move's judgement,
+// and both sides' accuracy. The review runs on the PostGameAnalyzer pool; clicking the graph or a move
+// shows that position on the board, and the result can be saved as annotated PGN.
+public class ReportPanel extends JPanel {
+    private static final String[] COLUMNS = {"Move", "Eval", "", "Best"};
+
+    // One analyzer for all boards; -Dchess.report.threads and -Dchess.report.nodes configure it
+    private static final ExecutorService REVIEW_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "post-game-review");
+        t.setDaemon(true);
+        return t;
+    });
+    private static PostGameAnalyzer analyzer;
+
+    private final Supplier<Pgn.Game> gameSupplier;
+    private final IntConsumer seekHandler;
+
+    private final JButton reviewButton = new JButton("Review game");
+    private final JButton exportButton = new JButton("Export PGN");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final EvalGraph graph = new EvalGraph();
+    private final MoveModel model = new MoveModel();
+    private final JTable table = new JTable(model);
+    private final JLabel whiteLabel = new JLabel(" ");
+    private final JLabel blackLabel = new JLabel(" ");
+
+    private PostGameAnalyzer.Report report = null;
+    private Pgn.Game reviewed = null;
+    private AtomicBoolean reviewCancel = new AtomicBoolean();
+    private boolean seeking = false; // Set while the table selection follows the board
+
+    // gameSupplier gives the game so far; seekHandler shows the position after the given ply
+    public ReportPanel(Supplier<Pgn.Game> gameSupplier, IntConsumer seekHandler) {
+        super(new BorderLayout(6, 6));
+        this.gameSupplier = gameSupplier;
+        this.seekHandler = seekHandler;
+        setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        controls.add(reviewButton);
+        controls.add(exportButton);
+        controls.add(progressBar);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        exportButton.setEnabled(false);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(2).setMaxWidth(30);
+        table.setDefaultRenderer(Object.class, new JudgementRenderer());
+        table.getSelectionModel().addListSelectionListener(e -> {
+            int selected = table.getSelectedRow();
+            if (!e.getValueIsAdjusting() && selected >= 0 && !seeking) seekHandler.accept(selected + 1);
+        });
+
+        JPanel summary = new JPanel(new GridLayout(2, 1));
+        summary.add(whiteLabel);
+        summary.add(blackLabel);
+
+        JPanel top = new JPanel(new BorderLayout(0, 6));
+        top.add(controls, BorderLayout.NORTH);
+        top.add(graph, BorderLayout.CENTER);
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(summary, BorderLayout.SOUTH);
+
+        reviewButton.addActionListener(e -> review());
+        exportButton.addActionListener(e -> export());
+    }
+
+    // Reviews the game as it stands, replacing any review in progress
+    public void review() {
+        Pgn.Game game = gameSupplier.get();
+        reviewCancel.set(true);
+        AtomicBoolean cancel = new AtomicBoolean();
+        reviewCancel = cancel;
+        progressBar.setMaximum(game.moves.length + 1);
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        reviewButton.setEnabled(false);
+        REVIEW_EXECUTOR.execute(() -> {
+            PostGameAnalyzer.Report r = analyzer().analyze(Position.fromFen(game.startFen), game.moves, game.result, cancel,
+                    done -> SwingUtilities.invokeLater(() -> {
+                        if (!cancel.get()) progressBar.setValue(Math.max(progressBar.getValue(), done));
+                    }));
+            SwingUtilities.invokeLater(() -> {
+                if (cancel.get()) return;
+                reviewButton.setEnabled(true);
+                progressBar.setVisible(false);
+                show(game, r);
+            });
+        });
+    }
+
+    // Cancels any review in progress and forgets the shown one, e.g. when moves are taken back
+    public void clear() {
+        reviewCancel.set(true);
+        reviewButton.setEnabled(true);
+        progressBar.setVisible(false);
+        report = null;
+        reviewed = null;
+        model.fireTableDataChanged();
+        graph.setReport(null);
+        whiteLabel.setText(" ");
+        blackLabel.setText(" ");
+        exportButton.setEnabled(false);
+    }
+
+    private static synchronized PostGameAnalyzer analyzer() {
+        if (analyzer == null) analyzer = PostGameAnalyzer.fromProperties();
+        return analyzer;
+    }
+
+    private void show(Pgn.Game game, PostGameAnalyzer.Report r) {
+        reviewed = game;
+        report = r;
+        model.fireTableDataChanged();
+        graph.setReport(r);
+        whiteLabel.setText(summary(r, Position.WHITE));
+        blackLabel.setText(summary(r, Position.BLACK));
+        exportButton.setEnabled(true);
+    }
+
+    // Report.summary on two lines, to fit the side panel
+    private static String summary(PostGameAnalyzer.Report r, int color) {
+        return String.format("<html><b>%s</b>: %.1f%% accuracy, %d cp average loss<br>?! %d &nbsp; ? %d &nbsp; ?? %d</html>",
+                color == Position.WHITE ? "White" : "Black", r.accuracy(color), r.averageLoss(color),
+                r.count(color, PostGameAnalyzer.Judgement.INACCURACY), r.count(color, PostGameAnalyzer.Judgement.MISTAKE),
+                r.count(color, PostGameAnalyzer.Judgement.BLUNDER));
+    }
+
+    // Called when the board shows the position after ply moves
+    public void showPly(int ply) {
+        graph.setPly(ply);
+        if (report == null) return;
+        seeking = true;
+        if (ply >= 1 && ply <= report.moves.length) {
+            table.setRowSelectionInterval(ply - 1, ply - 1);
+            table.scrollRectToVisible(table.getCellRect(ply - 1, 0, true));
+        } else {
+            table.clearSelection();
+        }
+        seeking = false;
+    }
+
+    private void export() {
+        if (report == null) return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("game.pgn"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try {
+            Files.write(chooser.getSelectedFile().toPath(), report.toPgn(reviewed.tags).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save: " + e.getMessage(), "Export PGN", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private class MoveModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return report == null ? 0 : report.moves.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            PostGameAnalyzer.Annotated a = report.moves[row];
+            switch (column) {
+                case 0: return a.fullmove + (a.color == Position.WHITE ? ". " : "... ") + a.san;
+                case 1: return AnalysisPanel.formatScore(report.whiteScores[row + 1]);
+                case 2: return a.judgement.symbol;
+                default: return a.judgement.minLoss > 0 && a.bestSan != null ? a.bestSan : "";
+            }
+        }
+    }
+
+    private class JudgementRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable t, Object value, boolean selected, boolean focus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(t, value, selected, focus, row, column);
+            if (!selected) c.setForeground(colorOf(report.moves[row].judgement));
+            return c;
+        }
+    }
+
+    static Color colorOf(PostGameAnalyzer.Judgement judgement) {
+        switch (judgement) {
+            case BLUNDER: return new Color(200, 30, 30);
+            case MISTAKE: return new Color(220, 120, 0);
+            case INACCURACY: return new Color(170, 150, 0);
+            default: return Color.BLACK;
+        }
+    }
+
+    // White's share of the evaluation over the game, on the same scale as the evaluation bar, with a dot
+    // on each inaccuracy, mistake and blunder and a line at the position on the board
+    private class EvalGraph extends JComponent {
+        private PostGameAnalyzer.Report shown = null;
+        private int ply = -1;
+
+        EvalGraph() {
+            setPreferredSize(new Dimension(280, 110));
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    if (shown != null) seekHandler.accept(plyAt(e.getX()));
+                }
+            });
+        }
+
+        void setReport(PostGameAnalyzer.Report report) {
+            shown = report;
+            repaint();
+        }
+
+        void setPly(int ply) {
+            this.ply = ply;
+            repaint();
+        }
+
+        private int plyAt(int x) {
+            int last = shown.whiteScores.length - 1;
+            return last == 0 ? 0 : Math.max(0, Math.min(last, (int) Math.round(x * last / (double) (getWidth() - 1))));
+        }
+
+        private int xOf(int ply) {
+            int last = shown.whiteScores.length - 1;
+            return last == 0 ? 0 : (int) Math.round(ply * (getWidth() - 1) / (double) last);
+        }
+
+        private int yOf(int whiteScore) {
+            return (int) Math.round((getHeight() - 1) * (1 - AnalysisPanel.whiteShare(whiteScore)));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            int w = getWidth(), h = getHeight();
+            g.setColor(new Color(40, 40, 40));
+            g.fillRect(0, 0, w, h);
+            if (shown == null) return;
+            int[] scores = shown.whiteScores;
+            Polygon white = new Polygon();
+            white.addPoint(0, h);
+            for (int i = 0; i < scores.length; i++) white.addPoint(xOf(i), yOf(scores[i]));
+            white.addPoint(xOf(scores.length - 1), h);
+            g.setColor(new Color(235, 235, 235));
+            g.fillPolygon(white);
+            g.setColor(Color.GRAY);
+            g.drawLine(0, h / 2, w, h / 2);
+            for (PostGameAnalyzer.Annotated a : shown.moves) {
+                if (a.judgement.minLoss == 0) continue;
+                g.setColor(colorOf(a.judgement));
+                g.fillOval(xOf(a.ply + 1) - 3, yOf(scores[a.ply + 1]) - 3, 7, 7);
+            }
+            if (ply >= 0 && ply < scores.length) {
+                g.setColor(new Color(70, 130, 220));
+                g.drawLine(xOf(ply), 0, xOf(ply), h);
+            }
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Search {
+    public static final int INFINITE = 1_000_000;
+    public static final int MATE = 100_000;
+    public static final int MAX_PLY = 100;
+
+    // Selectivity; margins are in centipawns
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int REVERSE_FUTILITY_DEPTH = 3;
+    private static final int REVERSE_FUTILITY_MARGIN = 120; // Per ply of remaining depth
+    private static final int[] FUTILITY_MARGIN = {0, 150, 300};
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    private static final int[][] LMR = new int[MAX_PLY + 1][Position.MAX_MOVES];
+
+    static {
+        for (int d = 1; d <= MAX_PLY; d++) {
+            for (int m = 1; m < Position.MAX_MOVES; m++) {
+                LMR[d][m] = (int) (0.75 + Math.log(d) * Math.log(m) / 2.25);
+            }
+        }
+    }
+
+    // Scores within MAX_PLY of MATE are forced mates
+    public static boolean isMate(int score) {
+        return Math.abs(score) >= MATE - MAX_PLY;
+    }
+
+    // A mate score as "#N", or "#-N" for the side being mated, counting moves rather than plies
+    public static String formatMate(int score) {
+        return (score > 0 ? "#" : "#-") + (MATE - Math.abs(score) + 1) / 2;
+    }
+
+    public static class Limits {
+        public final int depth;
+        public final long timeMillis;
+        public final long nodes;
+        public final TimeManager timeManager; // Optional; decides after each iteration whether to go on
+
+        // Zero means unlimited for each field
+        public Limits(int depth, long timeMillis, long nodes) {
+            this(depth, timeMillis, nodes, null);
+        }
+
+        public Limits(int depth, long timeMillis, long nodes, TimeManager timeManager) {
+            this.depth = depth;
+            this.timeMillis = timeMillis;
+            this.nodes = nodes;
+            this.timeManager = timeManager;
+        }
+
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0, 0);
+        }
+
+        public static Limits time(long millis) {
+            return new Limits(0, millis, 0);
+        }
+
+        public static Limits nodes(long nodes) {
+            return new Limits(0, 0, nodes);
+        }
+
+        // Hard limit as the deadline, soft limit checked between iterations
+        public static Limits managed(TimeManager timeManager) {
+            return new Limits(0, timeManager.hardMillis(), 0, timeManager);
+        }
+    }
+
+    public interface Listener {
+        void iterationCompleted(int depth, Line[] lines, long nodes, long nanos);
+    }
+
+    // One principal variation; the score is from the side to move at the root
+    public static class Line {
+        public final int score;
+        public final int depth;
+        public final int[] pv;
+
+        public Line(int score, int depth, int[] pv) {
+            this.score = score;
+            this.depth = depth;
+            this.pv = pv;
+        }
+    }
+
+    public static class Result {
+        public final int bestMove;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+        public final long nanos;
+        public final int[] pv;
+
+        public Result(int bestMove, int score, int depth, long nodes, long nanos, int[] pv) {
+            this.bestMove = bestMove;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.pv = pv;
+        }
+    }
+
+    private final TranspositionTable tt;
+    private final EngineMetrics metrics;
+    private String gameId;
+    private AnalysisCache cache; // Optional; consulted before plain searches, fed by every deep one
+    private int evalNoise; // Weakening: each position's evaluation is off by up to this many centipawns
+    private long noiseSeed;
+
+    private Position pos;
+    private long deadline;
+    private long nodeLimit;
+    private volatile boolean stopRequested;
+    private AtomicBoolean externalStop;
+    private boolean aborted;
+    private Nnue.Accumulator accumulator; // Reused across searches while the network stays the same
+
+    // Plain counters for the hot path; flushed to EngineMetrics once per iteration
+    private long nodes, ttProbes, ttHits, ttCollisions, cutoffs, firstMoveCutoffs;
+    private long flushedNodes, flushedProbes, flushedHits, flushedCollisions, flushedCutoffs, flushedFirst;
+
+    private final int[] rootMoves = new int[Position.MAX_MOVES];
+    private int rootCount;
+    private final int[][] moves = new int[MAX_PLY + 1][Position.MAX_MOVES];
+    private final int[][] moveScores = new int[MAX_PLY + 1][Position.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    // metrics may be null for searches that should not count towards move statistics, such as analysis
+    public Search(TranspositionTable tt, EngineMetrics metrics) {
+        this.tt = tt;
+        this.metrics = metrics;
+    }
+
+    public void setGameId(String gameId) {
+        this.gameId = gameId;
+    }
+
+    public void setCache(AnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    // The same position gets the same error for a given seed, so the transposition table stays
+    // consistent; a new seed per game makes the mistakes differ from game to game
+    public void setEvalNoise(int centipawns, long seed) {
+        this.evalNoise = Math.max(0, centipawns);
+        this.noiseSeed = seed;
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Iterative deepening; the result is the last fully completed iteration
+    public Result search(Position root, Limits limits) {
+        return run(root, limits, 1, 1, null, null);
+    }
+
+    // Multi-PV analysis until cancelled or the limits are hit. Lines are reported to the listener after
+    // each completed iteration; startDepth > 1 skips iterations the transposition table already covers.
+    public Result analyze(Position root, Limits limits, int multiPv, int startDepth, Listener listener, AtomicBoolean cancel) {
+        return run(root, limits, Math.max(1, multiPv), Math.max(1, startDepth), listener, cancel);
+    }
+
+    private Result run(Position root, Limits limits, int multiPv, int startDepth, Listener listener, AtomicBoolean cancel) {
+        EngineEvents.SearchEvent searchEvent = new EngineEvents.SearchEvent();
+        searchEvent.begin();
+        long start = System.nanoTime();
+        pos = root;
+        stopRequested = false;
+        externalStop = cancel;
+        aborted = false;
+        nodes = ttProbes = ttHits = ttCollisions = cutoffs = firstMoveCutoffs = 0;
+        flushedNodes = flushedProbes = flushedHits = flushedCollisions = flushedCutoffs = flushedFirst = 0;
+        deadline = limits.timeMillis > 0 ? start + limits.timeMillis * 1_000_000 : Long.MAX_VALUE;
+        nodeLimit = limits.nodes > 0 ? limits.nodes : Long.MAX_VALUE;
+        int maxDepth = limits.depth > 0 ? Math.min(limits.depth, MAX_PLY) : MAX_PLY;
+        for (int[] k : killers) k[0] = k[1] = Move.NONE;
+        Nnue net = Nnue.get();
+        if (net != null && (accumulator == null || accumulator.network() != net)) accumulator = new Nnue.Accumulator(net);
+        if (net != null) pos.setAccumulator(accumulator);
+
+        rootCount = pos.generateLegalMoves(rootMoves);
+        if (rootCount == 0) {
+            pos.setAccumulator(null);
+            return new Result(Move.NONE, pos.inCheck() ? -MATE : 0, 0, 0, System.nanoTime() - start, new int[0]);
+        }
+        if (cache != null && listener == null) {
+            // A stored result at least as deep as this search would go replaces it
+            AnalysisCache.Entry cached = cache.probe(pos);
+            if (cached != null && cached.depth >= (limits.depth > 0 ? maxDepth : AnalysisCache.TRUSTED_DEPTH)) {
+                pos.setAccumulator(null);
+                return new Result(cached.move, cached.score, cached.depth, 0, System.nanoTime() - start, new int[]{cached.move});
+            }
+        }
+        orderRootMoves();
+        int lineCount = Math.min(multiPv, rootCount);
+
+        int bestMove = rootMoves[0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        int[] bestPv = {bestMove};
+        long previousIterationNodes = 0;
+        double branchingFactor = 0.0;
+
+        for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+            EngineEvents.IterationEvent iterationEvent = new EngineEvents.IterationEvent();
+            iterationEvent.begin();
+            long before = nodes;
+            Line[] lines = new Line[lineCount];
+            for (int pvIndex = 0; pvIndex < lineCount && !aborted; pvIndex++) {
+                int score = searchRoot(depth, pvIndex);
+                if (!aborted) lines[pvIndex] = new Line(score, depth, java.util.Arrays.copyOf(pvTable[0], pvLength[0]));
+            }
+            if (aborted) break;
+
+            bestScore = lines[0].score;
+            completedDepth = depth;
+            bestPv = lines[0].pv;
+            bestMove = bestPv[0];
+            long iterationNodes = nodes - before;
+            if (previousIterationNodes > 0) branchingFactor = (double) iterationNodes / previousIterationNodes;
+            previousIterationNodes = iterationNodes;
+            flushMetrics();
+            if (listener != null) listener.iterationCompleted(depth, lines, nodes, System.nanoTime() - start);
+            if (iterationEvent.shouldCommit()) {
+                iterationEvent.depth = depth;
+                iterationEvent.nodes = iterationNodes;
+                iterationEvent.score = bestScore;
+                iterationEvent.bestMove = Move.toUci(bestMove);
+                iterationEvent.commit();
+            }
+
+            if (rootCount == 1 && listener == null) break;
+            // Pruning can find a longer mate first, so a listener keeps deepening until the mate fits the depth
+            if (isMate(bestScore) && (listener == null || MATE - Math.abs(bestScore) <= depth)) break;
+            if (limits.timeManager != null && limits.timeManager.stopAfterIteration(depth, bestMove, bestScore,
+                    (System.nanoTime() - start) / 1_000_000)) break;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushMetrics();
+        if (metrics != null) metrics.recordSearch(gameId, completedDepth, nodes, elapsed, branchingFactor);
+        if (searchEvent.shouldCommit()) {
+            searchEvent.gameId = gameId;
+            searchEvent.depth = completedDepth;
+            searchEvent.nodes = nodes;
+            searchEvent.score = bestScore;
+            searchEvent.bestMove = Move.toUci(bestMove);
+            searchEvent.commit();
+        }
+        externalStop = null;
+        pos.setAccumulator(null);
+        if (cache != null && completedDepth >= AnalysisCache.MIN_DEPTH) cache.store(pos.hash(), bestMove, bestScore, completedDepth);
+        return new Result(bestMove, bestScore, completedDepth, nodes, elapsed, bestPv);
+    }
+
+    // Searches root moves from pvIndex onwards and moves the best of them into slot pvIndex, so
+    // earlier lines are excluded and the next iteration tries the previous best moves first
+    private int searchRoot(int depth, int pvIndex) {
+        nodes++;
+        pvLength[0] = 0;
+        int alpha = -INFINITE, beta = INFINITE;
+        int bestScore = -INFINITE;
+        int bestIndex = pvIndex;
+        for (int i = pvIndex; i < rootCount; i++) {
+            int move = rootMoves[i];
+            pos.makeMove(move);
+            int score;
+            if (i == pvIndex) {
+                score = -negamax(depth - 1, -beta, -alpha, 1, true);
+            } else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, 1, true);
+                if (score > alpha && !aborted) score = -negamax(depth - 1, -beta, -alpha, 1, true);
+            }
+            pos.unmakeMove(move);
+            if (aborted) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestIndex = i;
+                alpha = score;
+                updatePv(0, move);
+            }
+        }
+
+        int best = rootMoves[bestIndex];
+        System.arraycopy(rootMoves, pvIndex, rootMoves, pvIndex + 1, bestIndex - pvIndex);
+        rootMoves[pvIndex] = best;
+        if (pvIndex == 0) tt.store(pos.hash(), best, toTt(bestScore, 0), depth, TranspositionTable.EXACT);
+        return bestScore;
+    }
+
+    private void orderRootMoves() {
+        long entry = tt.probe(pos.hash());
+        int ttMove = entry != TranspositionTable.MISS && entry != TranspositionTable.COLLISION
+                ? TranspositionTable.move(entry) : Move.NONE;
+        System.arraycopy(rootMoves, 0, moves[0], 0, rootCount);
+        scoreMoves(0, rootCount, ttMove);
+        for (int i = 0; i < rootCount; i++) rootMoves[i] = pickNext(0, i, rootCount);
+    }
+
+    private void flushMetrics() {
+        if (metrics == null) return;
+        metrics.addIteration(nodes - flushedNodes, ttProbes - flushedProbes, ttHits - flushedHits,
+                ttCollisions - flushedCollisions, cutoffs - flushedCutoffs, firstMoveCutoffs - flushedFirst);
+        flushedNodes = nodes;
+        flushedProbes = ttProbes;
+        flushedHits = ttHits;
+        flushedCollisions = ttCollisions;
+        flushedCutoffs = cutoffs;
+        flushedFirst = firstMoveCutoffs;
+    }
+
+    private void checkLimits() {
+        if ((nodes & 1023) == 0 && (stopRequested || nodes >= nodeLimit || System.nanoTime() > deadline
+                || (externalStop != null && externalStop.get()))) {
+            aborted = true;
+        }
+    }
+
+    private int evaluate() {
+        int score = Evaluation.evaluate(pos);
+        if (evalNoise == 0) return score;
+        long z = (pos.hash() ^ noiseSeed) * 0x9E37_79B9_7F4A_7C15L;
+        z = (z ^ (z >>> 31)) * 0xBF58_476D_1CE4_E5B9L;
+        return score + (int) Math.floorMod(z ^ (z >>> 29), 2L * evalNoise + 1) - evalNoise;
+    }
+
+    // --- Alpha-beta ---
+
+    // Principal variation search: after the first move, moves are tried with a null window and only
+    // re-searched when they beat alpha. Null moves, reverse futility and futility pruning cut
+    // non-PV nodes that look hopeless or overwhelming; late quiet moves are searched at reduced depth.
+    private int negamax(int depth, int alpha, int beta, int ply, boolean nullAllowed) {
+        pvLength[ply] = ply;
+        boolean inCheck = pos.inCheck();
+        if (inCheck) depth++; // Check extension
+        if (depth <= 0) return quiescence(alpha, beta, ply);
+
+        nodes++;
+        checkLimits();
+        if (aborted) return 0;
+        if (ply > 0 && (pos.halfmoveClock() >= 100 || pos.isRepetition())) return 0;
+        if (ply >= MAX_PLY) return evaluate();
+
+        boolean pvNode = beta - alpha > 1;
+        long key = pos.hash();
+        int ttMove = Move.NONE;
+        ttProbes++;
+        long entry = tt.probe(key);
+        if (entry == TranspositionTable.COLLISION) {
+            ttCollisions++;
+        } else if (entry != TranspositionTable.MISS) {
+            ttHits++;
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTt(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int staticEval = inCheck ? -INFINITE : evaluate();
+        boolean mateBounds = Math.abs(alpha) >= MATE - MAX_PLY || Math.abs(beta) >= MATE - MAX_PLY;
+
+        if (!pvNode && !inCheck && !mateBounds) {
+            // Reverse futility: far enough above beta that the opponent cannot recover in time
+            if (depth <= REVERSE_FUTILITY_DEPTH && staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+                return staticEval;
+            }
+
+            // Null move: if passing still fails high, a real move would too. Skipped without pieces,
+            // where zugzwang makes passing an illusory advantage, and never twice in a row.
+            if (nullAllowed && depth >= NULL_MOVE_MIN_DEPTH && staticEval >= beta
+                    && pos.hasNonPawnMaterial(pos.sideToMove())) {
+                int r = 2 + depth / 4 + Math.min(2, (staticEval - beta) / Evaluation.pieceValue(Position.PAWN));
+                pos.makeNullMove();
+                int score = -negamax(depth - 1 - r, -beta, -beta + 1, ply + 1, false);
+                pos.unmakeNullMove();
+                if (aborted) return 0;
+                if (score >= beta) return score >= MATE - MAX_PLY ? beta : score;
+            }
+        }
+
+        int n = pos.generateLegalMoves(moves[ply]);
+        if (n == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(ply, n, ttMove);
+
+        // Frontier nodes too far below alpha only search moves that can change the material balance
+        boolean futile = !pvNode && !inCheck && !mateBounds && depth < FUTILITY_MARGIN.length
+                && staticEval + FUTILITY_MARGIN[depth] <= alpha;
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITE;
+        int bestMove = Move.NONE;
+        int searched = 0;
+        for (int i = 0; i < n; i++) {
+            int move = pickNext(ply, i, n);
+            boolean quiet = isQuiet(move);
+            boolean killer = move == killers[ply][0] || move == killers[ply][1];
+            pos.makeMove(move);
+            boolean givesCheck = pos.inCheck();
+
+            if (futile && searched > 0 && quiet && !givesCheck) {
+                pos.unmakeMove(move);
+                continue;
+            }
+
+            int score;
+            if (searched == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+            } else {
+                int reduction = 0;
+                if (depth >= LMR_MIN_DEPTH && searched >= LMR_MIN_MOVES && quiet && !killer && !inCheck && !givesCheck) {
+                    reduction = LMR[Math.min(depth, MAX_PLY)][Math.min(searched, Position.MAX_MOVES - 1)];
+                    if (pvNode) reduction--;
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+                if (score > alpha && reduction > 0 && !aborted) {
+                    score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1, true);
+                }
+                if (score > alpha && score < beta && !aborted) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+                }
+            }
+            pos.unmakeMove(move);
+            if (aborted) return 0;
+            searched++;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (i == 0) firstMoveCutoffs++;
+                        if (quiet && killers[ply][0] != move) {
+                            killers[ply][1] = killers[ply][0];
+                            killers[ply][0] = move;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        tt.store(key, bestMove, toTt(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        nodes++;
+        checkLimits();
+        if (aborted) return 0;
+        pvLength[ply] = ply;
+        if (ply >= MAX_PLY) return evaluate();
+
+        boolean inCheck = pos.inCheck();
+        int bestScore = -INFINITE;
+        if (!inCheck) {
+            bestScore = evaluate();
+            if (bestScore >= beta) return bestScore;
+            if (bestScore > alpha) alpha = bestScore;
+        }
+
+        int n = pos.generateLegalMoves(moves[ply]);
+        if (n == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(ply, n, Move.NONE);
+
+        for (int i = 0; i < n; i++) {
+            int move = pickNext(ply, i, n);
+            // Out of check every evasion is searched; otherwise only captures and promotions
+            if (!inCheck && isQuiet(move)) continue;
+            pos.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            pos.unmakeMove(move);
+            if (aborted) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    // --- Move ordering ---
+
+    private boolean isQuiet(int move) {
+        return pos.pieceAt(Move.to(move)) == 0 && !Move.isEnPassant(move) && Move.promotion(move) == 0;
+    }
+
+    private void scoreMoves(int ply, int n, int ttMove) {
+        int[] list = moves[ply];
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < n; i++) {
+            int move = list[i];
+            int victim = pos.pieceAt(Move.to(move));
+            int score;
+            if (move == ttMove) {
+                score = 1_000_000;
+            } else if (victim != 0 || Move.isEnPassant(move)) {
+                int victimValue = victim == 0 ? Evaluation.pieceValue(Position.PAWN) : Evaluation.pieceValue(Position.typeOf(victim));
+                score = 100_000 + victimValue * 16 - Position.typeOf(pos.pieceAt(Move.from(move)));
+            } else if (Move.promotion(move) != 0) {
+                score = 90_000 + Move.promotion(move);
+            } else if (move == killers[ply][0]) {
+                score = 80_000;
+            } else if (move == killers[ply][1]) {
+                score = 79_000;
+            } else {
+                score = 0;
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Selection sort step: most moves are never reached after a cutoff, so a full sort is wasted work
+    private int pickNext(int ply, int index, int n) {
+        int[] list = moves[ply];
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int j = index + 1; j < n; j++) {
+            if (scores[j] > scores[best]) best = j;
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][ply] = move;
+        for (int j = ply + 1; j < pvLength[ply + 1]; j++) pvTable[ply][j] = pvTable[ply + 1][j];
+        pvLength[ply] = Math.max(ply + 1, pvLength[ply + 1]);
+    }
+
+    // Mate scores are stored relative to the node so they stay valid at other depths
+    private static int toTt(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score + ply;
+        if (score <= -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTt(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score - ply;
+        if (score <= -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless self-play for training data. Every worker thread plays its own games with fixed-node
+// searches from randomised openings and writes quiet positions to its own shard files, so workers never
+// share anything but two counters. Memory is bounded by the hash budget plus one output buffer and one
+// game's records per worker.
+//
+// Record format (RECORD_BYTES, little-endian): the board as four longs of 16 nibbles (square
+// row * 8 + col, Position piece codes), side to move (byte), result in half points for White (byte),
+// search score in centipawns from White's point of view (short).
+public final class SelfPlay {
+    public static final int RECORD_BYTES = 36;
+    private static final int MAX_GAME_PLIES = 400;
+    private static final int RESIGN_SCORE = 1500;
+    private static final int RESIGN_PLIES = 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final long SHARD_RECORDS = 4_000_000;
+
+    private final Path outputDir;
+    private final long targetPositions;
+    private final int nodesPerMove;
+    private final int randomPlies;
+    private final int hashMbPerThread;
+
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+
+    public SelfPlay(Path outputDir, long targetPositions, int nodesPerMove, int randomPlies, int hashMbPerThread) {
+        this.outputDir = outputDir;
+        this.targetPositions = targetPositions;
+        this.nodesPerMove = nodesPerMove;
+        this.randomPlies = randomPlies;
+        this.hashMbPerThread = hashMbPerThread;
+    }
+
+    public void run(int threads) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            workers[i] = new Thread(() -> {
+                try {
+                    new Worker(id).run();
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            }, "selfplay-" + i);
+            workers[i].start();
+        }
+
+        long start = System.nanoTime();
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread t : workers) {
+                t.join(5000);
+                if (t.isAlive()) {
+                    running = true;
+                    break;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long n = positions.get();
+            System.out.printf("%,d positions  %,d games  %,.0f pos/s%n", n, games.get(), n / seconds);
+        }
+    }
+
+    // --- Worker ---
+
+    private final class Worker {
+        private final int id;
+        private final Random random;
+        private final Search search;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final int[] moves = new int[Position.MAX_MOVES];
+
+        // Records of the game in progress, completed with the result when it ends
+        private final long[] boards = new long[4 * MAX_GAME_PLIES];
+        private final byte[] sides = new byte[MAX_GAME_PLIES];
+        private final short[] scores = new short[MAX_GAME_PLIES];
+        private int pending;
+
+        private FileChannel shard;
+        private int shardIndex;
+        private long shardRecords;
+
+        Worker(int id) {
+            this.id = id;
+            this.random = new Random(System.nanoTime() ^ ((long) id << 32));
+            this.search = new Search(new TranspositionTable(hashMbPerThread), null);
+        }
+
+        void run() throws IOException {
+            try {
+                while (positions.get() < targetPositions) {
+                    int result = playGame();
+                    if (result >= 0) flushGame(result);
+                    games.incrementAndGet();
+                }
+                drain();
+            } finally {
+                if (shard != null) shard.close();
+            }
+        }
+
+        // Half points for White, or -1 if the opening left no playable game
+        private int playGame() {
+            pending = 0;
+            Position pos = Position.fromFen(Position.START_FEN);
+            for (int i = 0; i < randomPlies; i++) {
+                int n = pos.generateLegalMoves(moves);
+                if (n == 0) return -1;
+                pos.makeMove(moves[random.nextInt(n)]);
+            }
+            int winningStreak = 0, losingStreak = 0;
+            for (int ply = 0; ply < MAX_GAME_PLIES; ply++) {
+                if (!pos.hasAnyLegalMove()) {
+                    if (!pos.inCheck()) return 1;
+                    return pos.sideToMove() == Position.WHITE ? 0 : 2;
+                }
+                if (pos.halfmoveClock() >= 100 || pos.isRepetition() || insufficientMaterial(pos)) return 1;
+
+                Search.Result r = search.search(pos, Search.Limits.nodes(nodesPerMove));
+                int whiteScore = pos.sideToMove() == Position.WHITE ? r.score : -r.score;
+                if (isQuiet(pos, r)) record(pos, whiteScore);
+
+                // Adjudicate long-decided games instead of playing them out
+                winningStreak = whiteScore > RESIGN_SCORE ? winningStreak + 1 : 0;
+                losingStreak = whiteScore < -RESIGN_SCORE ? losingStreak + 1 : 0;
+                if (winningStreak >= RESIGN_PLIES) return 2;
+                if (losingStreak >= RESIGN_PLIES) return 0;
+
+                pos.makeMove(r.bestMove);
+            }
+            return 1;
+        }
+
+        // Positions where the static picture is misleading make poor training targets
+        private boolean isQuiet(Position pos, Search.Result r) {
+            if (pos.inCheck() || Math.abs(r.score) >= Search.MATE - Search.MAX_PLY) return false;
+            int best = r.bestMove;
+            return pos.pieceAt(Move.to(best)) == 0 && !Move.isEnPassant(best) && Move.promotion(best) == 0;
+        }
+
+        private void record(Position pos, int whiteScore) {
+            int base = 4 * pending;
+            boards[base] = boards[base + 1] = boards[base + 2] = boards[base + 3] = 0;
+            for (long occ = pos.occupied(); occ != 0; occ &= occ - 1) {
+                int sq = Long.numberOfTrailingZeros(occ);
+                boards[base + (sq >>> 4)] |= (long) pos.pieceAt(sq) << ((sq & 15) * 4);
+            }
+            sides[pending] = (byte) pos.sideToMove();
+            scores[pending] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, whiteScore));
+            pending++;
+        }
+
+        private void flushGame(int result) throws IOException {
+            for (int i = 0; i < pending; i++) {
+                if (buffer.remaining() < RECORD_BYTES) drain();
+                for (int w = 0; w < 4; w++) buffer.putLong(boards[4 * i + w]);
+                buffer.put(sides[i]).put((byte) result).putShort(scores[i]);
+            }
+            positions.addAndGet(pending);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            if (buffer.hasRemaining() && (shard == null || shardRecords >= SHARD_RECORDS)) {
+                if (shard != null) shard.close();
+                Path file = outputDir.resolve(String.format("selfplay-%02d-%04d.bin", id, shardIndex++));
+                shard = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                shardRecords = 0;
+            }
+            shardRecords += buffer.remaining() / RECORD_BYTES;
+            while (buffer.hasRemaining()) shard.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    static boolean insufficientMaterial(Position pos) {
+        long heavy = 0;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            heavy |= pos.pieces(color, Position.PAWN) | pos.pieces(color, Position.ROOK) | pos.pieces(color, Position.QUEEN);
+        }
+        return heavy == 0 && Long.bitCount(pos.occupied()) <= 3;
+    }
+
+    // --- Command line ---
+
+    // java SelfPlay <outputDir> [positions=1000000] [nodes=5000] [threads=all cores] [hashMb=256 total]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: java SelfPlay <outputDir> [positions] [nodes] [threads] [hashMb]");
+            System.exit(2);
+        }
+        Path dir = Paths.get(args[0]);
+        long target = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        int nodes = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int hashMb = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+        Files.createDirectories(dir);
+        new SelfPlay(dir, target, nodes, 8, Math.max(1, hashMb / threads)).run(threads);
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// The computer side of a simultaneous exhibition: one pool of engine threads and one hash table for
+// all boards. Requests are served first come, first served. Each search's time is fixed when it starts,
+// as the smaller of the board's share of the pool (maxReplyMillis * threads / boards waiting) and what
+// is left of maxReplyMillis after queueing. Replies therefore stay near the bound however many boards
+// are waiting, and get faster as the queue drains. Engine threads run below normal priority so the
+// boards keep repainting.
+public class SimulEngine {
+    private static final long MIN_THINK_MS = 50;
+
+    private final int threads;
+    private final long maxReplyMillis;
+    private final TranspositionTable table;
+    private final ExecutorService pool;
+    private final AtomicInteger waiting = new AtomicInteger(); // Queued or being searched
+
+    public SimulEngine(int threads, int hashMb, long maxReplyMillis) {
+        this.threads = threads;
+        this.maxReplyMillis = maxReplyMillis;
+        this.table = new TranspositionTable(hashMb);
+        AtomicInteger ids = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "simul-engine-" + ids.getAndIncrement());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    public long maxReplyMillis() {
+        return maxReplyMillis;
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+
+    // A search for one board; all boards' searches share this engine's hash table
+    public Search newSearch(String gameId) {
+        Search search = new Search(table, EngineMetrics.get());
+        search.setGameId(gameId);
+        search.setCache(AnalysisCache.shared());
+        return search;
+    }
+
+    // Searches root with the board's own Search and hands the result to onDone on an engine thread
+    public void requestMove(Search search, Position root, Consumer<Search.Result> onDone) {
+        long requested = System.nanoTime();
+        waiting.incrementAndGet();
+        pool.execute(() -> {
+            Search.Result result;
+            try {
+                long waited = (System.nanoTime() - requested) / 1_000_000;
+                long share = maxReplyMillis * threads / Math.max(threads, waiting.get());
+                long budget = Math.max(MIN_THINK_MS, Math.min(share, maxReplyMillis - waited));
+                result = search.search(root, Search.Limits.time(budget));
+            } finally {
+                waiting.decrementAndGet();
+            }
+            onDone.accept(result);
+        });
+    }
+}
@@ -0,0 +1,67 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Window for a simultaneous exhibition: one tab per board, each a full ChessGame against the shared
+// SimulEngine. Tabs waiting for the player's move are marked; the header shows the engine queue and
+// the slowest reply so far.
+public class SimulExhibition extends JFrame {
+    private static final int REFRESH_MS = 500;
+
+    private final SimulEngine engine;
+    private final List<ChessGame> boards = new ArrayList<>();
+    private final JTabbedPane tabs = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
+    private final JLabel header = new JLabel(" ");
+
+    private SimulExhibition(int boardCount, SimulEngine engine) {
+        super("Java Chess Game - Simul on " + boardCount + " boards");
+        this.engine = engine;
+        setSize(1100, 850);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+        header.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        add(header, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+
+        for (int i = 0; i < boardCount; i++) {
+            ChessGame game = new ChessGame(engine, "Board " + (i + 1));
+            boards.add(game);
+            int index = i;
+            tabs.addTab(tabTitle(index), game.getContentPane());
+            tabs.setToolTipTextAt(index, game.getTitle());
+            game.addPropertyChangeListener("title", e -> {
+                tabs.setTitleAt(index, tabTitle(index));
+                tabs.setToolTipTextAt(index, game.getTitle());
+            });
+        }
+
+        Timer refresh = new Timer(REFRESH_MS, e -> refresh());
+        refresh.start();
+    }
+
+    // Threads default to all cores but one, left for the boards; -Dchess.simul.hash sets the shared
+    // hash (MB, default 256) and -Dchess.simul.reply the reply-time bound (ms, default 3000)
+    public static void open(int boardCount) {
+        int threads = Integer.getInteger("chess.simul.threads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        SimulEngine engine = new SimulEngine(threads, Integer.getInteger("chess.simul.hash", 256),
+                Long.getLong("chess.simul.reply", 3000));
+        new SimulExhibition(boardCount, engine).setVisible(true);
+    }
+
+    private String tabTitle(int index) {
+        return (index + 1) + (boards.size() > index && boards.get(index).isPlayersTurn() ? " *" : "");
+    }
+
+    private void refresh() {
+        int yourMove = 0;
+        long slowest = 0;
+        for (int i = 0; i < boards.size(); i++) {
+            if (boards.get(i).isPlayersTurn()) yourMove++;
+            slowest = Math.max(slowest, boards.get(i).maxReplyMillis());
+            tabs.setTitleAt(i, tabTitle(i));
+        }
+        header.setText(String.format("%d boards   %d awaiting your move (*)   %d awaiting the engine   slowest reply %.1f s (bound %.1f s)",
+                boards.size(), yourMove, engine.waiting(), slowest / 1000.0, engine.maxReplyMillis() / 1000.0));
+    }
+}
@@ -0,0 +1,55 @@
+// Per-move time budget for a search on the clock. The hard limit is the search deadline and keeps a
+// safety margin so the engine cannot flag; the soft limit decides after each iteration whether starting
+// another one is worth it. An unstable best move or a falling score stretches the soft limit towards
+// the hard one, while a stable position moves on early and saves time for later.
+public final class TimeManager {
+    public static final long MOVE_OVERHEAD_MS = 50; // Search start-up plus handing the move back to the UI
+    private static final long MIN_MS = 1;
+
+    private final long softMillis;
+    private final long hardMillis;
+    private int lastBestMove = Move.NONE;
+    private int lastScore;
+    private double instability;
+
+    private TimeManager(long softMillis, long hardMillis) {
+        this.hardMillis = Math.max(MIN_MS, hardMillis);
+        this.softMillis = Math.max(MIN_MS, Math.min(softMillis, this.hardMillis));
+    }
+
+    // remaining, increment and delay as on the engine's clock; fullmoveNumber estimates moves to go
+    public static TimeManager forClock(long remainingMillis, long incrementMillis, long delayMillis, int fullmoveNumber) {
+        long movesToGo = Math.max(20, 45 - fullmoveNumber / 2);
+        long usable = Math.max(0, remainingMillis - MOVE_OVERHEAD_MS);
+        long soft = usable / movesToGo + incrementMillis * 3 / 4 + delayMillis;
+        // Time inside the delay is free; beyond it never risk more than a third of what is left
+        long hard = Math.min(soft * 4, Math.max(0, remainingMillis) / 3 + delayMillis - MOVE_OVERHEAD_MS);
+        return new TimeManager(soft, hard);
+    }
+
+    // No clock: spend about the given time per move, more when the position is unclear
+    public static TimeManager fixed(long millis) {
+        return new TimeManager(millis, millis * 2);
+    }
+
+    public long softMillis() {
+        return softMillis;
+    }
+
+    public long hardMillis() {
+        return hardMillis;
+    }
+
+    // Called by Search after every completed iteration
+    public boolean stopAfterIteration(int depth, int bestMove, int score, long elapsedMillis) {
+        instability *= 0.5;
+        if (depth > 1 && bestMove != lastBestMove) instability += 1.0;
+        double scale = 1.0 + instability;
+        if (depth > 1 && lastScore - score > Evaluation.pieceValue(Position.PAWN) / 3) scale *= 1.3;
+        lastBestMove = bestMove;
+        lastScore = score;
+        // The next iteration usually costs more than all earlier ones together, so only start it
+        // while less than half of the stretched budget is gone
+        return elapsedMillis >= Math.min(hardMillis, softMillis * scale) / 2;
+    }
+}
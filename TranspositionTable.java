@@ -0,0 +1,77 @@
+public class TranspositionTable {
+    public static final int EXACT = 0, LOWER = 1, UPPER = 2;
+
+    // Probe results that are not entries; flag value 3 is never stored, so neither can be real data
+    public static final long MISS = 0L;
+    public static final long COLLISION = -1L;
+
+    // Entry layout: bits 0-16 move, 17-18 bound, 19-26 depth, 32-63 score. The key slot holds
+    // key ^ data so a torn write from another thread reads back as a miss instead of a wrong entry.
+    private long[] keys;
+    private long[] data;
+    private int mask;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    // Not safe while a search is probing the table; resize between searches
+    public synchronized void resize(int megabytes) {
+        EngineEvents.HashResizeEvent event = new EngineEvents.HashResizeEvent();
+        event.begin();
+        long oldBytes = keys == null ? 0 : (long) keys.length * 16;
+        long entries = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / 16));
+        keys = new long[(int) Math.min(entries, 1 << 28)];
+        data = new long[keys.length];
+        mask = keys.length - 1;
+        if (event.shouldCommit()) {
+            event.oldBytes = oldBytes;
+            event.newBytes = (long) keys.length * 16;
+            event.commit();
+        }
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(data, 0L);
+    }
+
+    public int sizeMegabytes() {
+        return (int) ((long) keys.length * 16 / (1024 * 1024));
+    }
+
+    public long probe(long key) {
+        int i = (int) key & mask;
+        long d = data[i];
+        long k = keys[i] ^ d;
+        if (k == key && d != 0) return d;
+        return d == 0 ? MISS : COLLISION;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int i = (int) key & mask;
+        long old = data[i];
+        // Keep a deeper entry for the same position unless the new one is exact
+        if (old != 0 && (keys[i] ^ old) == key && depth(old) > depth && bound != EXACT) return;
+        long d = (move & 0x1FFFFL) | ((long) bound << 17) | ((long) Math.max(0, Math.min(depth, 255)) << 19)
+                | ((long) score << 32);
+        data[i] = d;
+        keys[i] = key ^ d;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0x1FFFF);
+    }
+
+    public static int bound(long entry) {
+        return (int) ((entry >>> 17) & 3);
+    }
+
+    public static int depth(long entry) {
+        return (int) ((entry >>> 19) & 255);
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >> 32);
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Texel tuning of the classical evaluation: minimises the squared difference between game results and
+// sigmoid(K * eval) over a file of labelled positions. The evaluation is linear in its parameters, so
+// each pass computes the error and its exact gradient in parallel and Adam takes one step.
+//
+// Input lines hold a FEN followed by the result from White's point of view, as 1-0 / 1/2-1/2 / 0-1 or
+// [1.0] / [0.5] / [0.0]; extra FEN fields, quotes and semicolons are ignored. SelfPlay shards are read
+// directly.
+public final class Tuner {
+    private static final int LEAF = 1 << 14; // Positions per fork-join leaf
+    private static final double LN10_OVER_400 = Math.log(10) / 400;
+
+    // Each position is four longs of 16 nibbles, one per square, holding the Position piece code
+    private long[] boards = new long[4 * 4096];
+    private byte[] results = new byte[4096]; // Half points for White: 0, 1 or 2
+    private int count;
+    private final ForkJoinPool pool;
+
+    public Tuner(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // --- Loading ---
+
+    // A text file, a SelfPlay shard (*.bin) or a directory of shards
+    public void load(Path file) throws IOException {
+        if (Files.isDirectory(file)) {
+            try (java.util.stream.Stream<Path> files = Files.list(file)) {
+                for (Path shard : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".bin")).sorted()::iterator) {
+                    loadShard(shard);
+                }
+            }
+            return;
+        }
+        if (file.toString().endsWith(".bin")) {
+            loadShard(file);
+            return;
+        }
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int space = line.indexOf(' ');
+                int last = line.lastIndexOf(' ');
+                if (space < 0) throw new IllegalArgumentException("No result: " + line);
+                add(line.substring(0, space), parseResult(line.substring(last + 1)));
+            }
+        }
+    }
+
+    private void loadShard(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(SelfPlay.RECORD_BYTES * 32768).order(ByteOrder.LITTLE_ENDIAN);
+            while (ch.read(buf) >= 0 || buf.position() > 0) {
+                buf.flip();
+                if (buf.remaining() < SelfPlay.RECORD_BYTES) break;
+                while (buf.remaining() >= SelfPlay.RECORD_BYTES) {
+                    ensureCapacity();
+                    int base = 4 * count;
+                    for (int w = 0; w < 4; w++) boards[base + w] = buf.getLong();
+                    buf.get(); // Side to move
+                    results[count++] = buf.get();
+                    buf.getShort(); // Search score
+                }
+                buf.compact();
+            }
+        }
+    }
+
+    private void ensureCapacity() {
+        if (count == results.length) {
+            results = Arrays.copyOf(results, count + (count >> 1));
+            boards = Arrays.copyOf(boards, 4 * results.length);
+        }
+    }
+
+    // Half points for White, 0 to 2
+    static int parseResult(String token) {
+        String t = token.replaceAll("[\"\\[\\];]", "");
+        switch (t) {
+            case "1-0": case "1.0": case "1": return 2;
+            case "1/2-1/2": case "0.5": return 1;
+            case "0-1": case "0.0": case "0": return 0;
+            default: throw new IllegalArgumentException("Bad result: " + token);
+        }
+    }
+
+    public void add(String fenBoard, int halfPoints) {
+        ensureCapacity();
+        int base = 4 * count;
+        boards[base] = boards[base + 1] = boards[base + 2] = boards[base + 3] = 0;
+        int sq = 0;
+        for (int i = 0; i < fenBoard.length() && sq < 64; i++) {
+            char ch = fenBoard.charAt(i);
+            if (ch == '/') continue;
+            if (Character.isDigit(ch)) {
+                sq += ch - '0';
+                continue;
+            }
+            int type = "pnbrqk".indexOf(Character.toLowerCase(ch)) + 1;
+            if (type == 0) throw new IllegalArgumentException("Bad FEN: " + fenBoard);
+            long piece = Position.piece(Character.isUpperCase(ch) ? Position.WHITE : Position.BLACK, type);
+            boards[base + (sq >>> 4)] |= piece << ((sq & 15) * 4);
+            sq++;
+        }
+        results[count++] = (byte) halfPoints;
+    }
+
+    // --- Error and gradient ---
+
+    // White-relative static evaluation of position i with real-valued parameters
+    private double evaluate(int i, double[] params) {
+        double score = 0;
+        for (int word = 0; word < 4; word++) {
+            long bits = boards[4 * i + word];
+            while (bits != 0) {
+                int shift = Long.numberOfTrailingZeros(bits) & ~3;
+                int piece = (int) (bits >>> shift) & 15;
+                bits &= ~(15L << shift);
+                int sq = word * 16 + shift / 4;
+                int type = Position.typeOf(piece);
+                if (Position.colorOf(piece) == Position.WHITE) {
+                    score += params[Evaluation.MATERIAL + type] + params[Evaluation.pstIndex(type, sq)];
+                } else {
+                    score -= params[Evaluation.MATERIAL + type] + params[Evaluation.pstIndex(type, sq ^ 56)];
+                }
+            }
+        }
+        return score;
+    }
+
+    private void addGradient(int i, double[] grad, double amount) {
+        for (int word = 0; word < 4; word++) {
+            long bits = boards[4 * i + word];
+            while (bits != 0) {
+                int shift = Long.numberOfTrailingZeros(bits) & ~3;
+                int piece = (int) (bits >>> shift) & 15;
+                bits &= ~(15L << shift);
+                int sq = word * 16 + shift / 4;
+                int type = Position.typeOf(piece);
+                boolean white = Position.colorOf(piece) == Position.WHITE;
+                double a = white ? amount : -amount;
+                grad[Evaluation.MATERIAL + type] += a;
+                grad[Evaluation.pstIndex(type, white ? sq : sq ^ 56)] += a;
+            }
+        }
+    }
+
+    // Sums over [from, to): slot PARAM_COUNT holds the squared error, the rest the gradient if requested
+    private final class PassTask extends RecursiveTask<double[]> {
+        private final int from, to;
+        private final double[] params;
+        private final double k;
+        private final boolean gradient;
+
+        PassTask(int from, int to, double[] params, double k, boolean gradient) {
+            this.from = from;
+            this.to = to;
+            this.params = params;
+            this.k = k;
+            this.gradient = gradient;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                PassTask left = new PassTask(from, mid, params, k, gradient);
+                left.fork();
+                double[] right = new PassTask(mid, to, params, k, gradient).compute();
+                double[] sum = left.join();
+                for (int j = 0; j < sum.length; j++) sum[j] += right[j];
+                return sum;
+            }
+            double[] out = new double[Evaluation.PARAM_COUNT + 1];
+            for (int i = from; i < to; i++) {
+                double s = 1.0 / (1.0 + Math.pow(10, -k * evaluate(i, params) / 400));
+                double diff = s - results[i] * 0.5;
+                out[Evaluation.PARAM_COUNT] += diff * diff;
+                if (gradient) addGradient(i, out, 2 * diff * s * (1 - s) * k * LN10_OVER_400);
+            }
+            return out;
+        }
+    }
+
+    public double error(double[] params, double k) {
+        return pool.invoke(new PassTask(0, count, params, k, false))[Evaluation.PARAM_COUNT] / count;
+    }
+
+    // Golden-section search for the K that best maps the starting evaluation onto the results
+    public double fitScale(double[] params) {
+        double lo = 0.05, hi = 5.0, g = (Math.sqrt(5) - 1) / 2;
+        double a = hi - g * (hi - lo), b = lo + g * (hi - lo);
+        double ea = error(params, a), eb = error(params, b);
+        while (hi - lo > 0.001) {
+            if (ea < eb) {
+                hi = b;
+                b = a;
+                eb = ea;
+                a = hi - g * (hi - lo);
+                ea = error(params, a);
+            } else {
+                lo = a;
+                a = b;
+                ea = eb;
+                b = lo + g * (hi - lo);
+                eb = error(params, b);
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    // Adam on the mean squared error; the king's material value is left alone as it always cancels
+    public int[] tune(int[] start, double k, int iterations, double rate) {
+        int n = Evaluation.PARAM_COUNT;
+        double[] params = new double[n];
+        for (int i = 0; i < n; i++) params[i] = start[i];
+        double[] m = new double[n], v = new double[n];
+        double beta1 = 0.9, beta2 = 0.999;
+        for (int it = 1; it <= iterations; it++) {
+            double[] pass = pool.invoke(new PassTask(0, count, params, k, true));
+            for (int i = 1; i < n; i++) {
+                if (i == Evaluation.MATERIAL + Position.KING) continue;
+                double g = pass[i] / count;
+                m[i] = beta1 * m[i] + (1 - beta1) * g;
+                v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+                double mHat = m[i] / (1 - Math.pow(beta1, it));
+                double vHat = v[i] / (1 - Math.pow(beta2, it));
+                params[i] -= rate * mHat / (Math.sqrt(vHat) + 1e-12);
+            }
+            if (it % 10 == 0 || it == iterations) {
+                System.out.printf("iteration %d  error %.6f%n", it, pass[n] / count);
+            }
+        }
+        int[] tuned = new int[n];
+        for (int i = 0; i < n; i++) tuned[i] = (int) Math.round(params[i]);
+        return tuned;
+    }
+
+    // --- Command line ---
+
+    // java Tuner <positions> [output=chess.eval] [iterations=300] [threads=all cores]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java Tuner <positions> [output] [iterations] [threads]");
+            System.exit(2);
+        }
+        Path output = Paths.get(args.length > 1 ? args[1] : "chess.eval");
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        Tuner tuner = new Tuner(threads);
+        long t0 = System.nanoTime();
+        tuner.load(Paths.get(args[0]));
+        System.out.printf("loaded %d positions in %.1f s%n", tuner.size(), (System.nanoTime() - t0) / 1e9);
+
+        int[] start = Evaluation.parameters();
+        double[] startParams = Arrays.stream(start).asDoubleStream().toArray();
+        double k = tuner.fitScale(startParams);
+        System.out.printf("K = %.3f  starting error %.6f%n", k, tuner.error(startParams, k));
+
+        t0 = System.nanoTime();
+        int[] tuned = tuner.tune(start, k, iterations, 1.0);
+        System.out.printf("tuned in %.1f s on %d threads%n", (System.nanoTime() - t0) / 1e9, threads);
+        Evaluation.writeParameters(tuned, output, "Texel-tuned on " + tuner.size() + " positions, K = " + k);
+        System.out.println("wrote " + output);
+        tuner.pool.shutdown();
+    }
+}
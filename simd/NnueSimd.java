@@ -0,0 +1,47 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API kernels for Nnue. Kept out of the main source directory because it needs JDK 16+ and the
+// incubator module to compile; build it after the rest with the main classes on the class path:
+//   javac --add-modules jdk.incubator.vector -cp out -d out simd/NnueSimd.java
+// Nnue loads it reflectively when jdk.incubator.vector is in the boot layer (run with
+// --add-modules jdk.incubator.vector) and the class is present; otherwise it uses its scalar kernels.
+final class NnueSimd implements Nnue.Kernels {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, accOffset + i);
+            a.add(ShortVector.fromArray(SHORTS, weights, weightOffset + i)).intoArray(acc, accOffset + i);
+        }
+        for (; i < n; i++) acc[accOffset + i] += weights[weightOffset + i];
+    }
+
+    @Override
+    public void sub(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, accOffset + i);
+            a.sub(ShortVector.fromArray(SHORTS, weights, weightOffset + i)).intoArray(acc, accOffset + i);
+        }
+        for (; i < n; i++) acc[accOffset + i] -= weights[weightOffset + i];
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int n) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(n); i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            sum = va.fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) result += a[aOffset + i] * b[bOffset + i];
+        return result;
+    }
+}